@@ -24,29 +24,50 @@
 package bloggerdata;
 
 import bloggerdata.json.BlogHeader;
-import bloggerdata.json.AllPosts;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Provê acesso às informações do blog via API de blogger. O acesso às informações públicas do blog depende de uma
  * chave, cujo valor deve estar definido na propriedade bloggerkey em um arquivo de propriedades 'risadinha.properties'
  * no diretório raiz do projeto.
  *
+ * <p>
+ * Os objetos JSON obtidos podem ser guardados em uma cópia local ({@link SnapshotStore}), a partir da qual o blog pode
+ * depois ser reconstruído sem acesso à rede, com {@link #replay(SnapshotStore)}.</p>
+ *
  * @author ricarte at ft.unicamp.br
  */
 public class Blog {
 
+    /**
+     * Quantidade padrão de publicações por página solicitada à API Blogger.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
     private final String base;
     private final String blogUrl;
     private final String key;
     private final Gson gson;
+    private final BloggerHttpClient http;
     private final BlogHeader header;
+    private final SnapshotStore recorder;
+    private final SnapshotStore source;
+    private int pageSize = DEFAULT_PAGE_SIZE;
 
     /**
      * Inicializa a estrutura para o acesso ao blog indicado na url, com chave de acesso definida no arquivo de
@@ -59,12 +80,86 @@ public class Blog {
      * @throws IOException Problema na transferência de dados do blog.
      */
     public Blog(String url, String base, String key) throws MalformedURLException, IOException {
+        this(url, base, key, BloggerHttpClient.getShared());
+    }
+
+    /**
+     * Inicializa a estrutura para o acesso ao blog indicado na url, usando o cliente HTTP indicado.
+     *
+     * @param url Endereço URL do blog.
+     * @param base Endereço base para acesso à API blogger.
+     * @param key Chave de acesso a dados públicos do blog.
+     * @param http Cliente HTTP para as requisições à API.
+     * @throws MalformedURLException Endereço URL inválido.
+     * @throws IOException Problema na transferência de dados do blog.
+     */
+    public Blog(String url, String base, String key, BloggerHttpClient http)
+            throws MalformedURLException, IOException {
+        this(url, base, key, http, null);
+    }
+
+    /**
+     * Inicializa a estrutura para o acesso ao blog indicado na url, guardando o cabeçalho e cada publicação obtida na
+     * cópia local indicada.
+     *
+     * @param url Endereço URL do blog.
+     * @param base Endereço base para acesso à API blogger.
+     * @param key Chave de acesso a dados públicos do blog.
+     * @param http Cliente HTTP para as requisições à API.
+     * @param recorder Cópia local que recebe os objetos JSON obtidos, ou null para não guardá-los.
+     * @throws MalformedURLException Endereço URL inválido.
+     * @throws IOException Problema na transferência de dados do blog ou na gravação da cópia local.
+     */
+    public Blog(String url, String base, String key, BloggerHttpClient http, SnapshotStore recorder)
+            throws MalformedURLException, IOException {
         this.base = base;
         blogUrl = url;
         this.key = key;
-        gson = new Gson();
-        header = gson.fromJson(new InputStreamReader(
-                new URL(base + "byurl?url=" + blogUrl + "&key=" + key).openStream()), BlogHeader.class);
+        this.http = http;
+        this.recorder = recorder;
+        source = null;
+        gson = createGson();
+        try (Reader reader = http.getReader(base + "byurl?url=" + blogUrl + "&key=" + key)) {
+            if (recorder == null) {
+                header = gson.fromJson(reader, BlogHeader.class);
+            } else {
+                JsonObject json = gson.fromJson(reader, JsonObject.class);
+                recorder.writeHeader(gson, json);
+                header = gson.fromJson(json, BlogHeader.class);
+            }
+        }
+    }
+
+    private Blog(SnapshotStore source, Gson gson) throws IOException {
+        base = null;
+        key = null;
+        http = null;
+        recorder = null;
+        this.source = source;
+        this.gson = gson;
+        header = source.readHeader(gson, BlogHeader.class);
+        blogUrl = header.getUrl();
+    }
+
+    /**
+     * Reconstrói o blog a partir de uma cópia local, sem acesso à rede.
+     *
+     * @param source Cópia local previamente gravada.
+     * @return O blog, com as publicações guardadas na cópia.
+     * @throws IOException Problema na leitura da cópia local.
+     */
+    public static Blog replay(SnapshotStore source) throws IOException {
+        return new Blog(source, createGson());
+    }
+
+    /**
+     * Conversor JSON com os adaptadores de Post e BlogHeader.
+     */
+    private static Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(new Post.AdapterFactory())
+                .registerTypeAdapter(BlogHeader.class, new BlogHeader.Adapter())
+                .create();
     }
 
     /**
@@ -78,20 +173,95 @@ public class Blog {
     }
 
     /**
-     * Lista com todas as publicações.
+     * Define a quantidade de publicações solicitadas em cada página da API Blogger.
+     *
+     * @param pageSize Quantidade de publicações por página (no mínimo 1).
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Lista com todas as publicações. Todas as páginas são transferidas e mantidas em memória; para blogs grandes,
+     * prefira {@link #iteratePosts()} ou {@link #streamPosts()}.
      *
      * @return Lista de Posts.
      * @throws MalformedURLException Problema na formação da URL para API Blogger.
      * @throws IOException Problema na transferência de dados.
      */
     public List<Post> getPosts() throws MalformedURLException, IOException {
-        AllPosts list = gson.fromJson(new InputStreamReader(
-                new URL(base + header.getId()
-                        + "/posts?key=" + key
-                        + "&maxResults=" + header.getNumberOfPosts()).openStream()),
-                AllPosts.class);
-        header.setAllPosts(list);
-        return list.getPosts();
+        List<Post> list = new ArrayList<>(header.getNumberOfPosts());
+        try {
+            iteratePosts().forEachRemaining(list::add);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return list;
+    }
+
+    /**
+     * Iterador sobre todas as publicações, obtidas página a página da API Blogger. Cada página é solicitada apenas
+     * quando a anterior foi consumida, e cada publicação é desserializada somente quando entregue.
+     *
+     * @return Iterador de Posts; falhas de transferência são sinalizadas com UncheckedIOException.
+     */
+    public Iterator<Post> iteratePosts() {
+        if (source != null) {
+            return replayPosts(post -> true);
+        }
+        return recording(new PostIterator(gson, token -> openPage("", token)));
+    }
+
+    /**
+     * Iterador sobre as publicações atualizadas depois do instante indicado. As páginas são solicitadas em ordem
+     * decrescente de atualização (orderBy=updated) e a iteração termina na primeira publicação que não foi alterada,
+     * sem transferir o restante do arquivo. O parâmetro startDate da API não é usado porque filtra pela data de
+     * publicação, e não pela de atualização.
+     *
+     * @param since Instante da última sincronização, no mesmo fuso de {@link Post#getUpdatedDate()}.
+     * @return Iterador de Posts alterados; falhas de transferência são sinalizadas com UncheckedIOException.
+     */
+    public Iterator<Post> iteratePostsUpdatedSince(LocalDateTime since) {
+        Predicate<Post> updated = post -> post.getUpdatedDate().isAfter(since);
+        if (source != null) {
+            return replayPosts(updated);
+        }
+        return recording(new PostIterator(gson, token -> openPage("&orderBy=updated", token), updated));
+    }
+
+    private Iterator<Post> recording(PostIterator it) {
+        if (recorder != null) {
+            it.record(recorder);
+        }
+        return it;
+    }
+
+    private Iterator<Post> replayPosts(Predicate<Post> accept) {
+        try {
+            return source.iteratePosts(gson, accept);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private Reader openPage(String options, String token) throws IOException {
+        return http.getReader(base + header.getId()
+                + "/posts?key=" + key
+                + "&maxResults=" + pageSize + options
+                + (token == null ? "" : "&pageToken=" + token));
+    }
+
+    /**
+     * Fluxo sequencial com todas as publicações, obtidas sob demanda como em {@link #iteratePosts()}. O fluxo deve
+     * ser fechado (try-with-resources) quando não for consumido até o fim.
+     *
+     * @return Fluxo de Posts.
+     */
+    public Stream<Post> streamPosts() {
+        Iterator<Post> it = iteratePosts();
+        Stream<Post> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return it instanceof PostIterator ? stream.onClose(((PostIterator) it)::close) : stream;
     }
 
     /**
@@ -103,10 +273,13 @@ public class Blog {
      * @throws IOException Problema na transferência de dados.
      */
     public Post getPost(long id) throws MalformedURLException, IOException {
-        Post post = gson.fromJson(new InputStreamReader(
-                new URL(base + getBlogHeader().getId()
-                        + "/posts/" + id + "?key=" + key).openStream()), Post.class);
-        return post;
+        if (source != null) {
+            return source.readPost(gson, id);
+        }
+        try (Reader reader = http.getReader(base + getBlogHeader().getId()
+                + "/posts/" + id + "?key=" + key)) {
+            return gson.fromJson(reader, Post.class);
+        }
     }
 
     /**
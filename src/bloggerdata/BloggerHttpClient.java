@@ -0,0 +1,367 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package bloggerdata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Cliente HTTP compartilhado pelo acesso à API Blogger. Reaproveita conexões (keep-alive), solicita respostas
+ * compactadas com gzip, revalida respostas já obtidas com ETag/If-None-Match, repete com espera exponencial as
+ * requisições que recebem 429 ou 5xx e impõe um prazo a cada requisição. Mantém contadores de requisições, latência
+ * e bytes transferidos.
+ *
+ * <p>
+ * O conteúdo das respostas é sempre entregue à medida que chega. Apenas respostas pequenas com ETag, lidas até o
+ * fim, são copiadas para revalidação, e o total guardado é limitado, de modo que percorrer todas as páginas do blog
+ * não mantém o arquivo de publicações na memória.</p>
+ *
+ * <p>
+ * Como os endereços são recebidos completos, um servidor local (por exemplo, com com.sun.net.httpserver) pode
+ * substituir a API Blogger em testes, bastando indicar seu endereço como base do {@link Blog}.</p>
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public class BloggerHttpClient {
+
+    /**
+     * Prazo padrão para o início da resposta de cada requisição.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Quantidade padrão de novas tentativas após 429 ou 5xx.
+     */
+    public static final int DEFAULT_RETRIES = 4;
+
+    private static final int MAX_CACHED_ENTRY_BYTES = 256 << 10;
+    private static final long MAX_CACHED_BYTES = 4 << 20;
+    private static final BloggerHttpClient SHARED = new BloggerHttpClient(DEFAULT_TIMEOUT, DEFAULT_RETRIES,
+            Duration.ofMillis(500));
+
+    private final HttpClient client;
+    private final Duration timeout;
+    private final int maxRetries;
+    private final long backoffMillis;
+    private final Map<String, CachedResponse> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong bytesDecoded = new AtomicLong();
+
+    /**
+     * Cria um cliente com parâmetros próprios. Em geral basta o cliente compartilhado ({@link #getShared()}).
+     *
+     * @param timeout Prazo para o início da resposta de cada requisição.
+     * @param maxRetries Quantidade máxima de novas tentativas após 429 ou 5xx.
+     * @param backoff Espera antes da primeira nova tentativa; dobra a cada tentativa seguinte.
+     */
+    public BloggerHttpClient(Duration timeout, int maxRetries, Duration backoff) {
+        this.timeout = timeout;
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoff.toMillis();
+        client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Obtém o cliente compartilhado por todo o processo.
+     *
+     * @return O cliente compartilhado.
+     */
+    public static BloggerHttpClient getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Obtém o conteúdo do endereço como texto UTF-8.
+     *
+     * @param url Endereço completo do recurso.
+     * @return Leitor do conteúdo, que deve ser fechado pelo chamador.
+     * @throws IOException Falha na transferência, prazo esgotado ou resposta de erro.
+     */
+    public Reader getReader(String url) throws IOException {
+        return new InputStreamReader(get(url), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Obtém o conteúdo do endereço, já descompactado. Respostas pequenas com ETag, lidas até o fim, são guardadas
+     * para revalidação; uma resposta 304 devolve o conteúdo guardado.
+     *
+     * @param url Endereço completo do recurso.
+     * @return Fluxo com o conteúdo, que deve ser fechado pelo chamador.
+     * @throws IOException Falha na transferência, prazo esgotado ou resposta de erro.
+     */
+    public InputStream get(String url) throws IOException {
+        CachedResponse cached;
+        synchronized (cache) {
+            cached = cache.get(url);
+        }
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException ex) {
+            throw new MalformedURLException(redact(url));
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip");
+        if (cached != null) {
+            builder.header("If-None-Match", cached.etag);
+        }
+        HttpRequest request = builder.GET().build();
+
+        for (int attempt = 0;; ++attempt) {
+            long start = System.nanoTime();
+            HttpResponse<InputStream> response;
+            try {
+                response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Requisição interrompida: " + redact(url));
+            } finally {
+                requests.incrementAndGet();
+                latencyNanos.addAndGet(System.nanoTime() - start);
+            }
+            int status = response.statusCode();
+            if (status == 304 && cached != null) {
+                response.body().close();
+                notModified.incrementAndGet();
+                bytesDecoded.addAndGet(cached.body.length);
+                return new ByteArrayInputStream(cached.body);
+            }
+            if ((status == 429 || status >= 500) && attempt < maxRetries) {
+                response.body().close();
+                retries.incrementAndGet();
+                pause(attempt, response.headers().firstValue("Retry-After"), url);
+                continue;
+            }
+            if (status >= 300) {
+                response.body().close();
+                throw new IOException("HTTP " + status + " em " + redact(url));
+            }
+            InputStream body = new CountingInputStream(response.body(), bytesTransferred);
+            if (response.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip")) {
+                body = new GZIPInputStream(body);
+            }
+            body = new CountingInputStream(body, bytesDecoded);
+            Optional<String> etag = response.headers().firstValue("ETag");
+            long length = response.headers().firstValueAsLong("Content-Length").orElse(0);
+            if (!etag.isPresent() || length > MAX_CACHED_ENTRY_BYTES) {
+                return body;
+            }
+            return new CachingInputStream(body, url, etag.get());
+        }
+    }
+
+    private void store(String url, CachedResponse response) {
+        synchronized (cache) {
+            CachedResponse old = cache.put(url, response);
+            cachedBytes += response.body.length - (old == null ? 0 : old.body.length);
+            Iterator<CachedResponse> it = cache.values().iterator();
+            while (cachedBytes > MAX_CACHED_BYTES && it.hasNext()) {
+                cachedBytes -= it.next().body.length;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Resume os contadores de uso do cliente.
+     *
+     * @return Texto com requisições, novas tentativas, revalidações, latência média e bytes transferidos.
+     */
+    public String getStatistics() {
+        long n = requests.get();
+        return String.format("HTTP: %d requisições (%d novas tentativas, %d não modificadas), latência média %.0f ms,"
+                + " %d bytes transferidos, %d bytes descompactados",
+                n, retries.get(), notModified.get(), n == 0 ? 0.0 : latencyNanos.get() / 1e6 / n,
+                bytesTransferred.get(), bytesDecoded.get());
+    }
+
+    private void pause(int attempt, Optional<String> retryAfter, String url) throws IOException {
+        long wait = backoffMillis << attempt;
+        if (retryAfter.isPresent()) {
+            try {
+                wait = Math.max(wait, Long.parseLong(retryAfter.get().trim()) * 1000);
+            } catch (NumberFormatException ex) {
+                // formato de data HTTP: mantém a espera exponencial
+            }
+        }
+        wait += ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+        try {
+            Thread.sleep(wait);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Requisição interrompida: " + redact(url));
+        }
+    }
+
+    /**
+     * Retira a chave de acesso do endereço, para uso em mensagens.
+     */
+    private static String redact(String url) {
+        return url.replaceAll("key=[^&]*", "key=***");
+    }
+
+    /**
+     * Resposta guardada para revalidação.
+     */
+    private static final class CachedResponse {
+
+        private final String etag;
+        private final byte[] body;
+
+        CachedResponse(String etag, byte[] body) {
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Fluxo que copia o conteúdo lido enquanto ele não excede o limite de uma resposta guardada. Ao fechar o fluxo,
+     * o restante do conteúdo é lido, ainda dentro do limite, e a cópia completa é guardada para revalidação; quem
+     * lê JSON costuma parar no fim do objeto, antes do fim do fluxo.
+     */
+    private final class CachingInputStream extends FilterInputStream {
+
+        private final String url;
+        private final String etag;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private boolean complete;
+
+        CachingInputStream(InputStream in, String url, String etag) {
+            super(in);
+            this.url = url;
+            this.etag = etag;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                append(new byte[]{(byte) b}, 0, 1);
+            } else {
+                complete = true;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                append(buffer, offset, n);
+            } else if (n < 0) {
+                complete = true;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            byte[] buffer = new byte[8192];
+            try {
+                while (copy != null && !complete) {
+                    read(buffer, 0, buffer.length);
+                }
+            } catch (IOException ex) {
+                // o conteúdo já lido não é afetado; apenas não será guardado
+                copy = null;
+            }
+            super.close();
+            if (complete && copy != null) {
+                store(url, new CachedResponse(etag, copy.toByteArray()));
+            }
+            copy = null;
+        }
+
+        private void append(byte[] buffer, int offset, int length) {
+            if (copy != null) {
+                if (copy.size() + length > MAX_CACHED_ENTRY_BYTES) {
+                    copy = null;
+                } else {
+                    copy.write(buffer, offset, length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fluxo que acumula em um contador a quantidade de bytes lidos.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                counter.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
@@ -24,37 +24,46 @@
 package bloggerdata;
 
 import bloggerdata.json.PostPublisher;
-import com.google.gson.JsonElement;
+import bloggerdata.json.Timestamps;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Dados de uma publicação do blog. Os campos dos objetos desta classe são
  * preenchidos pela API Blogger.
  *
+ * <p>
+ * A desserialização é feita por um adaptador próprio, que lê diretamente do fluxo JSON apenas os campos usados, ignora
+ * os demais (blog, replies, etag) sem construir árvores de JsonElement e converte as datas uma única vez para
+ * milissegundos e deslocamento do fuso. O adaptador é registrado no conversor JSON criado por {@link Blog}.</p>
+ *
  * @author ricarte at ft.unicamp.br
  */
 public class Post {
 
-    private String kind;
     private long id;
-    private JsonElement blog;
-    private String published;
-    private String updated;
+    private long publishedMillis;
+    private int publishedOffset;
+    private long updatedMillis;
+    private int updatedOffset;
     private String url;
     private String selfLink;
     private String title;
     private String content;
     private PostPublisher publisher;
-    private JsonElement replies;
     private String[] labels;
-
-    private String cleanUtf(String source) {
-        String result = source.replaceAll("[\u2000-\u200f]", "");
-        result = result.replaceAll("[\u2010-\u2015]", "-");
-        result = result.replaceAll("[\u2016-\u201f]", "'");
-        return result;
-    }
+    private boolean contentCleaned;
+    private boolean labelsCleaned;
 
     /**
      * Obter título da publicação.
@@ -80,7 +89,7 @@ public class Post {
      * @return A data da atualização.
      */
     public LocalDateTime getUpdatedDate() {
-        return OffsetDateTime.parse(updated).toLocalDateTime();
+        return Timestamps.toLocalDateTime(updatedMillis, updatedOffset);
     }
 
     /**
@@ -89,17 +98,32 @@ public class Post {
      * @return A data da publicação.
      */
     public LocalDateTime getPublishedDate() {
-        return OffsetDateTime.parse(published).toLocalDateTime();
+        return Timestamps.toLocalDateTime(publishedMillis, publishedOffset);
     }
 
     /**
      * Obter o conteúdo da publicação, retirando (se necessário) os caracteres
-     * UTF-8 de espaço (\u2000 a \u200f) e hífen (\u2010 a \u2015).
+     * UTF-8 de espaço (\u2000 a \u200f) e hífen (\u2010 a \u2015). A limpeza é feita
+     * apenas na primeira chamada.
      *
      * @return String com o conteúdo completo da publicação.
+     * @see TextNormalizer#cleanUtf(String)
      */
     public String getContent() {
-        return cleanUtf(content);
+        if (!contentCleaned) {
+            content = TextNormalizer.cleanUtf(content);
+            contentCleaned = true;
+        }
+        return content;
+    }
+
+    /**
+     * Descarta o conteúdo HTML da publicação, quando os dados dele extraídos já foram guardados em outro lugar. Depois
+     * desta chamada, {@link #getContent()} devolve null.
+     */
+    public void releaseContent() {
+        content = null;
+        contentCleaned = true;
     }
 
     /**
@@ -112,16 +136,17 @@ public class Post {
     }
 
     /**
-     * Obter marcadores da publicação.
+     * Obter marcadores da publicação, limpos como o conteúdo.
      *
      * @return Arranjo com os marcadores.
      */
     public String[] getLabels() {
-        if (labels != null) {
-            for (String label : labels) {
-                label = cleanUtf(label);
+        if (!labelsCleaned && labels != null) {
+            for (int i = 0; i < labels.length; ++i) {
+                labels[i] = TextNormalizer.cleanUtf(labels[i]);
             }
         }
+        labelsCleaned = true;
         return labels;
     }
 
@@ -133,4 +158,122 @@ public class Post {
     public String getUrl() {
         return url;
     }
+
+    /**
+     * Cria o adaptador de Post, que usa o adaptador padrão do Gson para o autor da publicação.
+     */
+    static final class AdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Post.class) {
+                return null;
+            }
+            return (TypeAdapter<T>) new Adapter(gson.getAdapter(PostPublisher.class));
+        }
+    }
+
+    /**
+     * Leitura e escrita de Post no formato da API Blogger.
+     */
+    private static final class Adapter extends TypeAdapter<Post> {
+
+        private final TypeAdapter<PostPublisher> publisherAdapter;
+
+        Adapter(TypeAdapter<PostPublisher> publisherAdapter) {
+            this.publisherAdapter = publisherAdapter;
+        }
+
+        @Override
+        public Post read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Post post = new Post();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        post.id = in.nextLong();
+                        break;
+                    case "published": {
+                        OffsetDateTime published = OffsetDateTime.parse(in.nextString());
+                        post.publishedMillis = published.toInstant().toEpochMilli();
+                        post.publishedOffset = published.getOffset().getTotalSeconds();
+                        break;
+                    }
+                    case "updated": {
+                        OffsetDateTime updated = OffsetDateTime.parse(in.nextString());
+                        post.updatedMillis = updated.toInstant().toEpochMilli();
+                        post.updatedOffset = updated.getOffset().getTotalSeconds();
+                        break;
+                    }
+                    case "url":
+                        post.url = in.nextString();
+                        break;
+                    case "selfLink":
+                        post.selfLink = in.nextString();
+                        break;
+                    case "title":
+                        post.title = in.nextString();
+                        break;
+                    case "content":
+                        post.content = in.nextString();
+                        break;
+                    case "author":
+                        post.publisher = publisherAdapter.read(in);
+                        break;
+                    case "labels": {
+                        List<String> labels = new ArrayList<>();
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            labels.add(in.nextString());
+                        }
+                        in.endArray();
+                        post.labels = labels.toArray(new String[0]);
+                        break;
+                    }
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return post;
+        }
+
+        @Override
+        public void write(JsonWriter out, Post post) throws IOException {
+            if (post == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(String.valueOf(post.id));
+            out.name("published").value(Timestamps.format(post.publishedMillis, post.publishedOffset));
+            out.name("updated").value(Timestamps.format(post.updatedMillis, post.updatedOffset));
+            out.name("url").value(post.url);
+            out.name("selfLink").value(post.selfLink);
+            out.name("title").value(post.title);
+            out.name("content").value(post.content);
+            if (post.publisher != null) {
+                out.name("author");
+                publisherAdapter.write(out, post.publisher);
+            }
+            if (post.labels != null) {
+                out.name("labels").beginArray();
+                for (String label : post.labels) {
+                    out.value(label);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+    }
 }
@@ -0,0 +1,210 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package bloggerdata;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Percorre as publicações do blog página a página, seguindo o nextPageToken da API Blogger. Cada publicação é
+ * desserializada apenas quando solicitada, de modo que somente a página corrente permanece aberta e nenhuma
+ * publicação já entregue continua referenciada pelo iterador.
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+class PostIterator implements Iterator<Post>, Closeable {
+
+    /**
+     * Origem das páginas da lista de publicações.
+     */
+    interface PageSource {
+
+        /**
+         * Abre uma página da lista de publicações.
+         *
+         * @param pageToken Marcador da página, ou null para a primeira página.
+         * @return Leitor do objeto JSON da página.
+         * @throws IOException Problema na transferência de dados.
+         */
+        Reader openPage(String pageToken) throws IOException;
+    }
+
+    private final Gson gson;
+    private final PageSource source;
+    private final Predicate<Post> accept;
+    private SnapshotStore snapshot;
+    private JsonReader reader;
+    private String pageToken;
+    private boolean inItems;
+    private boolean finished;
+    private Post next;
+
+    /**
+     * Prepara a iteração; a primeira página só é solicitada na primeira consulta ao iterador.
+     *
+     * @param gson Conversor JSON.
+     * @param source Origem das páginas.
+     */
+    PostIterator(Gson gson, PageSource source) {
+        this(gson, source, post -> true);
+    }
+
+    /**
+     * Prepara uma iteração que termina, sem solicitar novas páginas, na primeira publicação rejeitada pelo critério.
+     * Útil quando as páginas estão ordenadas pelo critério, como na ordenação por data de atualização.
+     *
+     * @param gson Conversor JSON.
+     * @param source Origem das páginas.
+     * @param accept Critério que as publicações entregues devem satisfazer.
+     */
+    PostIterator(Gson gson, PageSource source, Predicate<Post> accept) {
+        this.gson = gson;
+        this.source = source;
+        this.accept = accept;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Post next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Post post = next;
+        next = null;
+        return post;
+    }
+
+    /**
+     * Guarda na cópia local o objeto JSON de cada publicação lida das páginas.
+     *
+     * @param snapshot Cópia local que recebe as publicações.
+     */
+    void record(SnapshotStore snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void close() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                // nada a fazer: a página já foi descartada
+            }
+            reader = null;
+        }
+        finished = true;
+    }
+
+    private Post advance() {
+        try {
+            while (true) {
+                if (reader == null) {
+                    if (finished) {
+                        return null;
+                    }
+                    openPage();
+                } else if (inItems && reader.hasNext()) {
+                    Post post = readPost();
+                    if (accept.test(post)) {
+                        return post;
+                    }
+                    close();
+                    return null;
+                } else {
+                    finishPage();
+                }
+            }
+        } catch (IOException ex) {
+            close();
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private Post readPost() throws IOException {
+        if (snapshot == null) {
+            return gson.fromJson(reader, Post.class);
+        }
+        JsonObject json = gson.fromJson(reader, JsonObject.class);
+        snapshot.writePost(gson, json);
+        return gson.fromJson(json, Post.class);
+    }
+
+    private void openPage() throws IOException {
+        String token = pageToken;
+        pageToken = null;
+        reader = new JsonReader(source.openPage(token));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("items")) {
+                reader.beginArray();
+                inItems = true;
+                return;
+            } else if (name.equals("nextPageToken")) {
+                pageToken = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        endPage();
+    }
+
+    private void finishPage() throws IOException {
+        if (inItems) {
+            reader.endArray();
+            inItems = false;
+        }
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("nextPageToken")) {
+                pageToken = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        endPage();
+    }
+
+    private void endPage() throws IOException {
+        reader.endObject();
+        reader.close();
+        reader = null;
+        finished = pageToken == null;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package bloggerdata;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cópia local, compactada com gzip, dos objetos JSON obtidos da API Blogger. O cabeçalho do blog fica em
+ * header.json.gz e cada publicação em posts/&lt;id&gt;-&lt;atualização&gt;.json.gz, onde a atualização é o instante
+ * (em segundos desde 1970) do campo updated. Uma publicação já guardada com a mesma atualização não é regravada.
+ *
+ * <p>
+ * Em modo de reprodução ({@link Blog#replay(SnapshotStore)}) o blog e as publicações são reconstruídos a partir
+ * desses arquivos, sem acesso à rede; quando há várias versões de uma publicação, vale a mais recente.</p>
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public class SnapshotStore {
+
+    private static final String HEADER = "header.json.gz";
+    private static final String POSTS = "posts";
+    private static final String SUFFIX = ".json.gz";
+
+    private final Path dir;
+    private final Path postsDir;
+
+    /**
+     * Associa a cópia local a um diretório, criado se necessário.
+     *
+     * @param dir Diretório da cópia local.
+     * @throws IOException Falha na criação do diretório.
+     */
+    public SnapshotStore(Path dir) throws IOException {
+        this.dir = dir;
+        postsDir = dir.resolve(POSTS);
+        Files.createDirectories(postsDir);
+    }
+
+    /**
+     * Guarda o objeto JSON do cabeçalho do blog.
+     *
+     * @param gson Conversor JSON.
+     * @param header Objeto JSON do cabeçalho.
+     * @throws IOException Falha na gravação.
+     */
+    void writeHeader(Gson gson, JsonObject header) throws IOException {
+        write(gson, header, dir.resolve(HEADER));
+    }
+
+    /**
+     * Lê o objeto JSON do cabeçalho do blog.
+     *
+     * @param gson Conversor JSON.
+     * @param type Classe do objeto a ser criado.
+     * @param <T> Tipo do objeto.
+     * @return O cabeçalho.
+     * @throws IOException Falha na leitura ou cópia local sem cabeçalho.
+     */
+    <T> T readHeader(Gson gson, Class<T> type) throws IOException {
+        return read(gson, dir.resolve(HEADER), type);
+    }
+
+    /**
+     * Guarda o objeto JSON de uma publicação, se esta versão ainda não estiver guardada.
+     *
+     * @param gson Conversor JSON.
+     * @param post Objeto JSON da publicação.
+     * @throws IOException Falha na gravação.
+     */
+    void writePost(Gson gson, JsonObject post) throws IOException {
+        Path file = postsDir.resolve(post.get("id").getAsString() + "-"
+                + OffsetDateTime.parse(post.get("updated").getAsString()).toEpochSecond() + SUFFIX);
+        if (!Files.exists(file)) {
+            write(gson, post, file);
+        }
+    }
+
+    /**
+     * Lê a versão mais recente de uma publicação.
+     *
+     * @param gson Conversor JSON.
+     * @param id Identificador da publicação.
+     * @return A publicação.
+     * @throws IOException Falha na leitura ou publicação ausente da cópia local.
+     */
+    Post readPost(Gson gson, long id) throws IOException {
+        Path file = latestVersions().get(id);
+        if (file == null) {
+            throw new NoSuchFileException(postsDir.resolve(id + "-*" + SUFFIX).toString());
+        }
+        return read(gson, file, Post.class);
+    }
+
+    /**
+     * Percorre a versão mais recente de cada publicação guardada, da atualização mais recente para a mais antiga.
+     * Cada arquivo só é lido quando a publicação correspondente é solicitada.
+     *
+     * @param gson Conversor JSON.
+     * @param accept Critério que as publicações entregues devem satisfazer.
+     * @return Iterador de Posts; falhas de leitura são sinalizadas com UncheckedIOException.
+     * @throws IOException Falha na leitura do diretório.
+     */
+    Iterator<Post> iteratePosts(Gson gson, Predicate<Post> accept) throws IOException {
+        List<Path> files = new ArrayList<>(latestVersions().values());
+        files.sort((a, b) -> Long.compare(updated(b), updated(a)));
+        Iterator<Path> it = files.iterator();
+        return new Iterator<Post>() {
+            private Post next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && it.hasNext()) {
+                    try {
+                        Post post = read(gson, it.next(), Post.class);
+                        if (accept.test(post)) {
+                            next = post;
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Post next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Post post = next;
+                next = null;
+                return post;
+            }
+        };
+    }
+
+    private Map<Long, Path> latestVersions() throws IOException {
+        Map<Long, Path> latest = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(postsDir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                latest.merge(id(file), file, (a, b) -> updated(a) >= updated(b) ? a : b);
+            }
+        }
+        return latest;
+    }
+
+    private static long id(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('-')));
+    }
+
+    private static long updated(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - SUFFIX.length()));
+    }
+
+    private static void write(Gson gson, JsonObject json, Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(tmp)),
+                StandardCharsets.UTF_8)) {
+            gson.toJson(json, out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static <T> T read(Gson gson, Path file, Class<T> type) throws IOException {
+        try (Reader in = new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)),
+                StandardCharsets.UTF_8)) {
+            return gson.fromJson(in, type);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package bloggerdata;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Normalização de textos do blog em uma única passagem sobre os caracteres, com tabelas pré-calculadas e um buffer
+ * reaproveitado por thread. Usada por {@link Post} (limpeza de espaços e hífens Unicode), pelo grafo RDF (chaves dos
+ * assuntos) e pela ligação com DBpedia (nomes de recursos).
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public final class TextNormalizer {
+
+    private static final char FIRST_PUNCTUATION = '\u2000';
+    private static final char LAST_PUNCTUATION = '\u201f';
+    private static final char DROP = '\0';
+    private static final int REMOVE = -1;
+    private static final int FALLBACK = -2;
+    private static final int MAX_RETAINED_BUFFER = 1 << 16;
+
+    /**
+     * Substitutos dos caracteres entre \u2000 e \u201f: espaços e marcas de direção são retirados, hífens e traços
+     * viram '-', aspas viram '\''.
+     */
+    private static final char[] PUNCTUATION = new char[LAST_PUNCTUATION - FIRST_PUNCTUATION + 1];
+
+    /**
+     * Resultado de StringUtils.stripAccents para cada caractere até o fim dos diacríticos combinantes (\u036f):
+     * o caractere sem acento, REMOVE quando ele desaparece ou FALLBACK quando não corresponde a um único caractere.
+     */
+    private static final int[] FOLD = new int[0x370];
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+
+    static {
+        for (char c = FIRST_PUNCTUATION; c <= LAST_PUNCTUATION; ++c) {
+            PUNCTUATION[c - FIRST_PUNCTUATION] = c <= '\u200f' ? DROP : c <= '\u2015' ? '-' : '\'';
+        }
+        for (char c = 0; c < FOLD.length; ++c) {
+            String folded = StringUtils.stripAccents(String.valueOf(c));
+            FOLD[c] = folded.isEmpty() ? REMOVE : folded.length() == 1 ? folded.charAt(0) : FALLBACK;
+        }
+    }
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Retira os caracteres Unicode de espaço (\u2000 a \u200f) e substitui os de hífen (\u2010 a \u2015) por '-' e os
+     * de aspas (\u2016 a \u201f) por '\''. Quando não há o que substituir, devolve o próprio texto.
+     *
+     * @param source Texto original.
+     * @return Texto limpo, ou null se o original for null.
+     */
+    public static String cleanUtf(String source) {
+        if (source == null) {
+            return null;
+        }
+        int length = source.length();
+        int i = 0;
+        while (i < length && !isPunctuation(source.charAt(i))) {
+            ++i;
+        }
+        if (i == length) {
+            return source;
+        }
+        StringBuilder out = buffer();
+        out.append(source, 0, i);
+        for (; i < length; ++i) {
+            char c = source.charAt(i);
+            if (isPunctuation(c)) {
+                c = PUNCTUATION[c - FIRST_PUNCTUATION];
+                if (c == DROP) {
+                    continue;
+                }
+            }
+            out.append(c);
+        }
+        return release(out);
+    }
+
+    /**
+     * Chave de um assunto (marcador) no grafo: letras minúsculas, sem espaços, sem \u200b, sem acentos e sem as
+     * sequências ".-". Equivale a aplicar, nessa ordem, toLowerCase, StringUtils.deleteWhitespace,
+     * StringUtils.stripAccents e StringUtils.remove(".-").
+     *
+     * @param label Marcador da publicação.
+     * @return Chave do assunto.
+     */
+    public static String toSubjectKey(String label) {
+        String lower = label.toLowerCase();
+        StringBuilder out = buffer();
+        boolean afterDot = false;
+        for (int i = 0; i < lower.length(); ++i) {
+            char c = lower.charAt(i);
+            if (c == '\u200b' || Character.isWhitespace(c)) {
+                continue;
+            }
+            int folded = c < FOLD.length ? FOLD[c] : FALLBACK;
+            if (folded == FALLBACK) {
+                release(out);
+                return StringUtils.remove(StringUtils.stripAccents(
+                        StringUtils.deleteWhitespace(lower.replace("\u200b", ""))), ".-");
+            }
+            if (folded == REMOVE) {
+                continue;
+            }
+            // ".-" é retirado da sequência já sem acentos, sem reexaminar o resultado
+            if (folded == '-' && afterDot) {
+                out.setLength(out.length() - 1);
+                afterDot = false;
+            } else {
+                out.append((char) folded);
+                afterDot = folded == '.';
+            }
+        }
+        return release(out);
+    }
+
+    /**
+     * Nome de recurso usado na busca em DBpedia: espaços substituídos por '_'.
+     *
+     * @param label Rótulo do recurso.
+     * @return Nome do recurso.
+     */
+    public static String toLinkerName(String label) {
+        return label.replace(' ', '_');
+    }
+
+    private static boolean isPunctuation(char c) {
+        return c >= FIRST_PUNCTUATION && c <= LAST_PUNCTUATION;
+    }
+
+    private static StringBuilder buffer() {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        return out;
+    }
+
+    private static String release(StringBuilder out) {
+        String result = out.toString();
+        if (out.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+}
@@ -23,12 +23,17 @@
  */
 package bloggerdata.json;
 
-import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 
 /**
- * Cabeçalho do blog, objeto preenchido por API Blogger.
+ * Cabeçalho do blog, objeto preenchido por API Blogger. Do objeto posts guarda-se apenas a quantidade de
+ * publicações; pages e locale são ignorados na leitura.
  * 
  * @author ricarte at ft.unicamp.br
  */
@@ -37,14 +42,13 @@ public class BlogHeader {
     private long id;
     private String name;
     private String description;
-    private String published;
-    private String updated;
+    private long publishedMillis;
+    private int publishedOffset;
+    private long updatedMillis;
+    private int updatedOffset;
     private String url;
     private String selfLink;
-    private Resources posts;
-    private Resources pages;
-    private JsonElement locale;
-    private AllPosts allPosts;
+    private int numberOfPosts;
     
     /**
      * Get blog kind.
@@ -67,7 +71,7 @@ public class BlogHeader {
      * @return Number of posts.
      */
     public int getNumberOfPosts() {
-        return posts.getTotalItems();
+        return numberOfPosts;
     }
     
     /**
@@ -107,7 +111,7 @@ public class BlogHeader {
      * @return Date/Time of blog publication.
      */
     public LocalDateTime getPublished() {
-        return OffsetDateTime.parse(published).toLocalDateTime();
+        return Timestamps.toLocalDateTime(publishedMillis, publishedOffset);
     }
     
     /**
@@ -115,23 +119,96 @@ public class BlogHeader {
      * @return Date/Time of last update. 
      */
     public LocalDateTime getLastUpdated() {
-        return OffsetDateTime.parse(updated).toLocalDateTime();
+        return Timestamps.toLocalDateTime(updatedMillis, updatedOffset);
     }
-    
-    /**
-     * Return the reference to all posts.
-     * @return Object that contains the list of all posts. 
-     */
-    public AllPosts getAllPosts() {
-        return allPosts;
-    }
-    
+
     /**
-     * Set the reference to all posts.
-     * @param allPosts The reference to all posts.
+     * Leitura e escrita de BlogHeader no formato da API Blogger, registrada no conversor JSON de
+     * {@link bloggerdata.Blog}.
      */
-    public void setAllPosts(AllPosts allPosts) {
-        this.allPosts = allPosts;
-    }
+    public static final class Adapter extends TypeAdapter<BlogHeader> {
 
+        @Override
+        public BlogHeader read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            BlogHeader header = new BlogHeader();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "kind":
+                        header.kind = in.nextString();
+                        break;
+                    case "id":
+                        header.id = in.nextLong();
+                        break;
+                    case "name":
+                        header.name = in.nextString();
+                        break;
+                    case "description":
+                        header.description = in.nextString();
+                        break;
+                    case "published": {
+                        OffsetDateTime published = OffsetDateTime.parse(in.nextString());
+                        header.publishedMillis = published.toInstant().toEpochMilli();
+                        header.publishedOffset = published.getOffset().getTotalSeconds();
+                        break;
+                    }
+                    case "updated": {
+                        OffsetDateTime updated = OffsetDateTime.parse(in.nextString());
+                        header.updatedMillis = updated.toInstant().toEpochMilli();
+                        header.updatedOffset = updated.getOffset().getTotalSeconds();
+                        break;
+                    }
+                    case "url":
+                        header.url = in.nextString();
+                        break;
+                    case "selfLink":
+                        header.selfLink = in.nextString();
+                        break;
+                    case "posts":
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            if (in.nextName().equals("totalItems")) {
+                                header.numberOfPosts = in.nextInt();
+                            } else {
+                                in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return header;
+        }
+
+        @Override
+        public void write(JsonWriter out, BlogHeader header) throws IOException {
+            if (header == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("kind").value(header.kind);
+            out.name("id").value(String.valueOf(header.id));
+            out.name("name").value(header.name);
+            out.name("description").value(header.description);
+            out.name("published").value(Timestamps.format(header.publishedMillis, header.publishedOffset));
+            out.name("updated").value(Timestamps.format(header.updatedMillis, header.updatedOffset));
+            out.name("url").value(header.url);
+            out.name("selfLink").value(header.selfLink);
+            out.name("posts").beginObject().name("totalItems").value(header.numberOfPosts).endObject();
+            out.endObject();
+        }
+    }
 }
@@ -23,8 +23,6 @@
  */
 package bloggerdata.json;
 
-import com.google.gson.JsonElement;
-
 /**
  * Mapeia o objeto JSON
  * com dados de autor da postagem.
@@ -35,7 +33,6 @@ public class PostPublisher {
     private String id;
     private String displayName;
     private String url;
-    private JsonElement image;
     
     /**
      * Obtém nome do autor da publicação.
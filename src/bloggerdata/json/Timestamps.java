@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package bloggerdata.json;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversões das datas da API Blogger (RFC 3339) para a representação compacta usada pelas classes desserializadas:
+ * milissegundos desde 1970 e deslocamento do fuso em segundos, obtidos uma única vez na leitura.
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public final class Timestamps {
+
+    private Timestamps() {
+    }
+
+    /**
+     * Converte a representação compacta em data e hora locais, no fuso original.
+     *
+     * @param epochMilli Milissegundos desde 1970-01-01T00:00Z.
+     * @param offsetSeconds Deslocamento do fuso, em segundos.
+     * @return Data e hora no fuso original.
+     */
+    public static LocalDateTime toLocalDateTime(long epochMilli, int offsetSeconds) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+
+    /**
+     * Converte a representação compacta de volta para o texto RFC 3339.
+     *
+     * @param epochMilli Milissegundos desde 1970-01-01T00:00Z.
+     * @param offsetSeconds Deslocamento do fuso, em segundos.
+     * @return Texto da data.
+     */
+    public static String format(long epochMilli, int offsetSeconds) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMilli),
+                ZoneOffset.ofTotalSeconds(offsetSeconds)).toString();
+    }
+}
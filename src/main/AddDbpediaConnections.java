@@ -5,6 +5,7 @@
  */
 package main;
 
+import bloggerdata.TextNormalizer;
 import java.util.Set;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
@@ -21,8 +22,7 @@ public class AddDbpediaConnections {
     static Logger log = LogManager.getRootLogger();
 
     public static String normalize(String string) {
-        String normal = string.replaceAll(" ", "_");
-        return normal;
+        return TextNormalizer.toLinkerName(string);
     }
 
     public static String singular(String string) {
@@ -54,7 +54,7 @@ public class AddDbpediaConnections {
     public static void main(String[] args) {
         log.info("============= Adding DBpedia labels ==============");
         DbpediaConnections dbpc = new DbpediaConnections();
-        Set<RDFNode> subjects = dbpc.getSubjects().toSet();
+        Set<RDFNode> subjects = dbpc.getSubjects();
         log.info("Processing " + subjects.size() + " labels");
         int count = 0;
         for (RDFNode node : subjects) {
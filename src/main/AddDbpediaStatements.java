@@ -26,6 +26,7 @@ package main;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Properties;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
@@ -34,7 +35,7 @@ import org.apache.jena.query.QueryFactory;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.NodeIterator;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
@@ -70,13 +71,11 @@ public class AddDbpediaStatements {
         } catch (IOException ex) {
             log.warn(ex.getLocalizedMessage());
         }
-        RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"));
-        Model model = dataset.getModel();
-        dataset.beginRead();
-        NodeIterator dbSubjects = model.listObjectsOfProperty(OWL.sameAs);
-        dataset.commit();
-        while (dbSubjects.hasNext()) {
-            Resource subjNode = (Resource) dbSubjects.nextNode();
+        RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"),
+                RdfRepository.Backend.valueOf(blogProp.getProperty("repositorytype", "tdb").toUpperCase()));
+        List<RDFNode> dbSubjects = dataset.executeRead(session -> session.listObjects(OWL.sameAs));
+        for (RDFNode dbSubject : dbSubjects) {
+            Resource subjNode = dbSubject.asResource();
             String subject = subjNode.toString();
             queryStr = "SELECT ?p ?o WHERE { \n<"
                     + subject + "> ?p ?o . \n"
@@ -88,28 +87,27 @@ public class AddDbpediaStatements {
             Resource dbProp;
             RDFNode object;
             QuerySolution sol;
+            Model statements = ModelFactory.createDefaultModel();
             try (QueryExecution qexec = QueryExecutionFactory.sparqlService(service, query)) {
                 resp = qexec.execSelect();
                 while (resp.hasNext()) {
                     sol = resp.next();
                     dbProp = (Resource) sol.get("p");
-                    property = model.createProperty(dbProp.getNameSpace(), dbProp.getLocalName());
+                    property = statements.createProperty(dbProp.getNameSpace(), dbProp.getLocalName());
                     object = sol.get("o");
                     String objectLabel = object.toString();
                     if (isPureLatin1(objectLabel)) {
                         log.info("Adding (" + subject + "," + property.getLocalName()
                                 + "," + objectLabel + ")");
-
-                        dataset.beginWrite();
-                        model.add(
-                                model.createStatement(subjNode, property, object));
-                        dataset.commit();
+                        statements.add(subjNode, property, object);
                     }
                 }
                 qexec.close();
             } catch (Exception ex) {
                 log.warn(ex.getLocalizedMessage());
-                //dataset.commit();
+            }
+            if (!statements.isEmpty()) {
+                dataset.add(statements);
             }
         }
         log.info("============= Ended DBpedia statements ===============");
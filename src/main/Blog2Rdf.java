@@ -24,17 +24,44 @@
 package main;
 
 import bloggerdata.Blog;
+import bloggerdata.BloggerHttpClient;
+import bloggerdata.SnapshotStore;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.format.DateTimeFormatter;
 import java.util.Properties;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import rdfdata.ConversionPipeline;
 import rdfdata.RdfRepository;
+import risadinha.ParseCache;
+import risadinha.ResumoHtmlContentParser;
+import risadinha.SectionMarkers;
 
 /**
  * Traduzir todas as publicações do blog para RDF e armazená-las no repositório local.
- * 
+ *
+ * <p>
+ * Propriedades lidas do arquivo de configuração, além das de acesso ao blog ('blogurl', 'bloggerapiurl' e
+ * 'bloggerkey'):</p>
+ * <ul>
+ * <li>Obtenção: 'pagesize', publicações solicitadas em cada página da API Blogger; 'snapshotdir', diretório dos
+ * objetos JSON obtidos da API, com 'snapshotmode' igual a record (padrão) para guardá-los ou replay para
+ * reconstruir o blog a partir deles, sem acesso à rede.</li>
+ * <li>Conversão: 'conversion' igual a pipeline (padrão) usa {@link ConversionPipeline}, configurado por
+ * 'parsethreads', 'graphthreads' e 'queuesize'; igual a parallel, {@link RdfRepository#create(Blog)} com
+ * 'conversionthreads' threads (padrão: quantidade de processadores); igual a sequential, a mesma conversão com uma
+ * única thread. Com 'incremental' igual a true e o blog já registrado no repositório, apenas as publicações
+ * alteradas desde a última sincronização são convertidas.</li>
+ * <li>Análise: 'marker...', marcadores das seções das publicações (ver {@link SectionMarkers}); 'htmlparser'
+ * igual a streaming analisa o HTML sem construir a árvore do documento; 'parsecache', arquivo em que as seções
+ * extraídas são guardadas para as publicações que não mudaram (ver {@link ParseCache}).</li>
+ * <li>Repositório: 'repositorydir'; 'repositorytype' igual a tdb2 usa Jena TDB2 em vez de TDB1 (ver
+ * {@link RdfRepository.Backend}); 'batchsize', publicações gravadas por transação; 'querycachesize', resultados
+ * de consultas guardados entre transações de escrita (0 desativa).</li>
+ * </ul>
+ *
  * @author ricarte at ft.unicamp.br
  * @author Karina Hagiwara
  */
@@ -43,7 +70,7 @@ public class Blog2Rdf {
     static Logger log = LogManager.getRootLogger();
 
     /**
-     * Traduzir blog para RDF.
+     * Traduzir blog para RDF, com a configuração descrita na documentação da classe.
      * @param args Nome do arquivo de propriedades para acesso ao blog via API Blogger.
      */
     public static void main(String[] args) {
@@ -56,19 +83,66 @@ public class Blog2Rdf {
         try {
             Properties blogProp = new Properties();
             blogProp.load(new FileInputStream(propFile));
-            Blog blog = new Blog(blogProp.getProperty("blogurl"), 
-                    blogProp.getProperty("bloggerapiurl"),
-                    blogProp.getProperty("bloggerkey"));
+            String snapshotDir = blogProp.getProperty("snapshotdir");
+            String snapshotMode = blogProp.getProperty("snapshotmode", "record");
+            Blog blog;
+            if (snapshotDir != null && snapshotMode.equals("replay")) {
+                blog = Blog.replay(new SnapshotStore(Paths.get(snapshotDir)));
+            } else {
+                blog = new Blog(blogProp.getProperty("blogurl"), 
+                        blogProp.getProperty("bloggerapiurl"),
+                        blogProp.getProperty("bloggerkey"),
+                        BloggerHttpClient.getShared(),
+                        snapshotDir == null ? null : new SnapshotStore(Paths.get(snapshotDir)));
+            }
+            blog.setPageSize(Integer.parseInt(blogProp.getProperty("pagesize",
+                    String.valueOf(Blog.DEFAULT_PAGE_SIZE))));
             int total = blog.getNumberOfPosts();
             log.info("Blog " + blog.getName() + " has " + total
                     + " published posts until "
                     + blog.getLastUpdated().format(DateTimeFormatter.ofPattern("ccc dd MMM yyyy HH:mm")));
 
-            RdfRepository tdb = new RdfRepository(blogProp.getProperty("repositorydir"));
-            tdb.create(blog);
+            RdfRepository tdb = new RdfRepository(blogProp.getProperty("repositorydir"),
+                    RdfRepository.Backend.valueOf(blogProp.getProperty("repositorytype", "tdb").toUpperCase()));
+            tdb.setBatchSize(Integer.parseInt(blogProp.getProperty("batchsize",
+                    String.valueOf(RdfRepository.DEFAULT_BATCH_SIZE))));
+            tdb.setQueryCacheSize(Integer.parseInt(blogProp.getProperty("querycachesize",
+                    String.valueOf(RdfRepository.DEFAULT_QUERY_CACHE_SIZE))));
+            SectionMarkers markers = SectionMarkers.fromProperties(blogProp);
+            ResumoHtmlContentParser.Mode htmlParser = ResumoHtmlContentParser.Mode.valueOf(
+                    blogProp.getProperty("htmlparser", "dom").toUpperCase());
+            tdb.setSectionMarkers(markers);
+            tdb.setHtmlParserMode(htmlParser);
+            String parseCacheFile = blogProp.getProperty("parsecache");
+            ParseCache parseCache = parseCacheFile == null ? null
+                    : new ParseCache(Paths.get(parseCacheFile), markers, htmlParser);
+            tdb.setParseCache(parseCache);
+            boolean incremental = Boolean.parseBoolean(blogProp.getProperty("incremental", "false"))
+                    && tdb.getLastModifiedDate(blog.getUrl()) != null;
+            if (incremental) {
+                tdb.update(blog);
+            } else {
+                String conversion = blogProp.getProperty("conversion", "pipeline");
+                if (conversion.equals("parallel") || conversion.equals("sequential")) {
+                    tdb.setParallelism(conversion.equals("sequential") ? 1
+                            : Integer.parseInt(blogProp.getProperty("conversionthreads",
+                                    String.valueOf(Runtime.getRuntime().availableProcessors()))));
+                    tdb.create(blog);
+                } else {
+                    ConversionPipeline pipeline = new ConversionPipeline(tdb, blogProp);
+                    pipeline.setParseCache(parseCache);
+                    pipeline.run(blog);
+                }
+            }
+            if (parseCache != null) {
+                parseCache.save(!incremental);
+                log.info(parseCache.getStatistics());
+            }
+            log.info(tdb.getQueryCacheStatistics());
         } catch (IOException ex) {
             log.error("During conversion to RDF", ex);
         }
+        log.info(BloggerHttpClient.getShared().getStatistics());
         log.info("=========== Translation finished =======================");
     }
 
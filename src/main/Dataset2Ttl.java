@@ -25,12 +25,21 @@ package main;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import rdfdata.ExportFormat;
 import rdfdata.RdfRepository;
 
 /**
+ * Exporta o repositório para o arquivo Turtle 'turtlefilename' de risadinha.properties. Com 'exportfiles', uma
+ * lista de arquivos separados por vírgula, exporta para todos eles em uma única leitura do repositório, com o formato
+ * de cada um deduzido da extensão (ver {@link ExportFormat}) e compactação gzip para nomes terminados em .gz.
+ *
  * @author ricarte at ft.unicamp.br
  */
 public class Dataset2Ttl {
@@ -42,10 +51,21 @@ public class Dataset2Ttl {
         try {
             Properties blogProp = new Properties();
             blogProp.load(new FileInputStream("risadinha.properties"));
-            RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"));
-            String filename = blogProp.getProperty("turtlefilename");
-            long size = dataset.exportTtl(filename);            
-            log.info("Exported " + size + " statements to " + filename);
+            RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"),
+                    RdfRepository.Backend.valueOf(blogProp.getProperty("repositorytype", "tdb").toUpperCase()));
+            String exportFiles = blogProp.getProperty("exportfiles");
+            if (exportFiles == null) {
+                String filename = blogProp.getProperty("turtlefilename");
+                long size = dataset.exportTtl(filename);
+                log.info("Exported " + size + " statements to " + filename);
+            } else {
+                Map<Path, ExportFormat> files = new LinkedHashMap<>();
+                for (String filename : exportFiles.split(",")) {
+                    files.put(Paths.get(filename.trim()), ExportFormat.fromFileName(filename.trim()));
+                }
+                dataset.export(files).forEach((file, size) ->
+                        log.info("Exported " + size + " statements to " + file));
+            }
         } catch (IOException ex) {
             log.error("Durante conversão para RDF", ex);
         }
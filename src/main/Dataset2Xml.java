@@ -42,7 +42,8 @@ public class Dataset2Xml {
         try {
             Properties blogProp = new Properties();
             blogProp.load(new FileInputStream("risadinha.properties"));
-            RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"));
+            RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"),
+                    RdfRepository.Backend.valueOf(blogProp.getProperty("repositorytype", "tdb").toUpperCase()));
             String filename = blogProp.getProperty("xmlfilename");
             long size = dataset.exportXml(filename);            
             log.info("Exported " + size + " statements to " + filename);
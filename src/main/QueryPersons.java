@@ -23,66 +23,78 @@
  */
 package main;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.Locale;
-import org.apache.commons.text.similarity.FuzzyScore;
+import java.util.Properties;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.NodeIterator;
-import org.apache.jena.rdf.model.Property;
-import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.ResIterator;
-import rdfdata.Namespaces;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import rdfdata.PersonReconciliation;
 import rdfdata.RdfRepository;
 
 /**
+ * Relatório de possíveis pessoas duplicadas no repositório, obtido em uma única leitura dos nomes.
+ *
+ * <p>
+ * Propriedades em risadinha.properties: reconciliationreport (arquivo do relatório; na ausência, a saída padrão),
+ * reconciliationthreshold (semelhança mínima, padrão 0.7), sameasfile (arquivo Turtle com sugestões owl:sameAs) e
+ * sameasthreshold (semelhança mínima das sugestões, padrão 0.9).</p>
+ *
  * @author ricarte at ft.unicamp.br
  */
 public class QueryPersons {
 
+    static Logger log = LogManager.getRootLogger();
+
     public static void main(String[] args) {
-        RdfRepository dataset = new RdfRepository("MyDataset");
-        System.out.println("Repositório modificado em " + 
-                dataset.getLastModifiedDate("http://www.drrisadinha.org.br/"));
-        List<String> persons = dataset.getPerson();
+        log.info("============= Reconciling persons ==============");
+        try {
+            Properties blogProp = new Properties();
+            blogProp.load(new FileInputStream("risadinha.properties"));
+            RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"),
+                    RdfRepository.Backend.valueOf(blogProp.getProperty("repositorytype", "tdb").toUpperCase()));
+            double threshold = Double.parseDouble(blogProp.getProperty("reconciliationthreshold",
+                    String.valueOf(PersonReconciliation.DEFAULT_THRESHOLD)));
+            long start = System.nanoTime();
+            PersonReconciliation reconciliation = new PersonReconciliation(dataset);
+            List<PersonReconciliation.Match> matches = reconciliation.reconcile(threshold);
+            log.info(String.format("%d nomes, %d pares comparados, %d pares com semelhança >= %.2f em %d ms",
+                    reconciliation.getNames(), reconciliation.getComparisons(), matches.size(), threshold,
+                    (System.nanoTime() - start) / 1000000));
 
-//        Model personsRdf = ModelFactory.createDefaultModel();
-//        personsRdf.read("colaboradores.ttl");
-        Model personsRdf = dataset.getModel();
-        Property name = personsRdf.getProperty(Namespaces.NS_FOAF, "name");
-        
-        FuzzyScore fuzz = new FuzzyScore(Locale.getDefault());
-        for (String person : persons) {
-            dataset.beginRead();
-            ResIterator it = personsRdf.listSubjectsWithProperty(name, person);
-            dataset.end();
-            if (it.hasNext()) {
-                while (it.hasNext()) {
-                    System.out.println("Localizou " + person + " como " + it.nextResource().getLocalName());
-                }
+            String report = blogProp.getProperty("reconciliationreport");
+            if (report == null) {
+                Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                PersonReconciliation.writeReport(matches, out);
+                out.flush();
             } else {
-                int score = 0;
-                int newscore;
-                dataset.beginRead();
-                NodeIterator nit = personsRdf.listObjectsOfProperty(name);
-                dataset.end();
-                RDFNode best = null;
-                while (nit.hasNext()) {
-                    RDFNode node = nit.nextNode();
-                    newscore = fuzz.fuzzyScore(person, node.toString());
-                    if (newscore > score) {
-                        score = newscore;
-                        best = node;
-                    }
+                try (Writer out = Files.newBufferedWriter(Paths.get(report), StandardCharsets.UTF_8)) {
+                    PersonReconciliation.writeReport(matches, out);
+                }
+                log.info("Relatório em " + report);
+            }
+
+            String sameAsFile = blogProp.getProperty("sameasfile");
+            if (sameAsFile != null) {
+                Model sameAs = PersonReconciliation.sameAs(matches,
+                        Double.parseDouble(blogProp.getProperty("sameasthreshold", "0.9")));
+                try (OutputStream out = Files.newOutputStream(Paths.get(sameAsFile))) {
+                    RDFDataMgr.write(out, sameAs, RDFFormat.TURTLE_PRETTY);
                 }
-                dataset.beginRead();
-                ResIterator it2 = personsRdf.listSubjectsWithProperty(name, best);
-                dataset.end();
-                if (it2.hasNext()) {
-                    System.out.println("Melhor match para " + person + ": " + it2.next().getLocalName() +
-                            " com score " + score);
-                } else 
-                    System.out.println("Nenhum match para " + person);
+                log.info(sameAs.size() + " sugestões owl:sameAs em " + sameAsFile);
             }
+        } catch (IOException ex) {
+            log.error("Durante reconciliação de pessoas", ex);
         }
+        log.info("============= Reconciled persons ===============");
     }
 }
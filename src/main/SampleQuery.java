@@ -23,32 +23,45 @@
  */
 package main;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
-import org.apache.jena.query.Dataset;
-import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QueryFactory;
-import org.apache.jena.query.QuerySolution;
-import org.apache.jena.query.ResultSet;
-import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.tdb.TDBFactory;
+import java.util.Properties;
 import org.apache.jena.vocabulary.OWL;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import rdfdata.Namespaces;
+import rdfdata.RdfRepository;
+import rdfdata.RdfSnapshot;
+import rdfdata.RepositorySession;
 
 /**
+ * Consultas de exemplo sobre o repositório indicado por 'repositorydir' e 'repositorytype' em risadinha.properties
+ * ou, se indicada na linha de comando, sobre uma cópia binária (ver {@link RdfSnapshot}), lida diretamente para a
+ * memória. As consultas são feitas em uma sessão de leitura.
  *
  * @author ricarte
  */
 public class SampleQuery {
     static Logger log = LogManager.getLogger(SampleQuery.class);
-    public static void main(String[] args) {
-        q2();
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            try (RepositorySession session = RdfSnapshot.openSession(Paths.get(args[0]))) {
+                q2(session);
+            }
+        } else {
+            Properties blogProp = new Properties();
+            blogProp.load(new FileInputStream("risadinha.properties"));
+            RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"),
+                    RdfRepository.Backend.valueOf(blogProp.getProperty("repositorytype", "tdb").toUpperCase()));
+            try (RepositorySession session = dataset.read()) {
+                q2(session);
+            }
+        }
     }
 
-    static void q1() {
+    static void q1(RepositorySession session) {
                 String queryString = "PREFIX dc: <" + Namespaces.NS_DCT + ">\n"
                 + "PREFIX owl: <" + OWL.getURI() + ">\n"
                 + "SELECT ?t ?dbs WHERE { \n"
@@ -56,24 +69,18 @@ public class SampleQuery {
                 + "?id dc:subject ?s .\n"
                 + "?s owl:sameAs ?dbs .\n"
                 + "}";
-        Dataset dataset = TDBFactory.createDataset("MyDataset");
-        Query q = QueryFactory.create(queryString);
-        QueryExecution qx = QueryExecutionFactory.create(q, dataset);
-        log.info("Query: " + qx.getQuery().toString());        
-        ResultSet results = qx.execSelect();
+        log.info("Query: " + queryString);
+        List<String> results = session.select(queryString,
+                ans -> ans.get("t").toString() + " : " + ans.get("dbs").toString());
         log.info("Results: ");
-        List<String> vars = results.getResultVars();
-        for (String var : vars)
-            log.info(var);
         int i = 0;
-        while (results.hasNext()) {
-            QuerySolution ans = results.next();
+        for (String result : results) {
             log.info("Resultado " + ++i);
-            System.out.println(ans.get("t").toString() + " : " + ans.get("dbs").toString());
+            System.out.println(result);
         }
     }
     
-        static void q2() {
+        static void q2(RepositorySession session) {
                 String queryString = "PREFIX dc: <" + Namespaces.NS_DCT + ">\n"
                 + "PREFIX owl: <" + OWL.getURI() + ">\n"
                 + "PREFIX dbo: <http://dbpedia.org/ontology/>\n"
@@ -84,23 +91,13 @@ public class SampleQuery {
                 + "?s owl:sameAs ?dbs .\n"
                 + "?dbs dbo:icd10 ?icd .\n"
                 + "}";
-        Dataset dataset = TDBFactory.createDataset("MyDataset");
-        Query q = QueryFactory.create(queryString);
-        QueryExecution qx = QueryExecutionFactory.create(q, dataset);
-        log.info("Query: " + qx.getQuery().toString());        
-        ResultSet results = qx.execSelect();
+        log.info("Query: " + queryString);
+        List<String> results = session.select(queryString,
+                ans -> ans.get("t").toString() + " : " + ans.get("icd").toString());
         log.info("Results: ");
-        List<String> vars = results.getResultVars();
-        for (String var : vars)
-            log.info(var);
         int i = 0;
-        while (results.hasNext()) {
-            QuerySolution ans = results.next();
-            RDFNode result = ans.get("t");
-            System.out.println("("+ ++i +") " + 
-                    ans.get("t").toString() + " : " + 
-                    ans.get("icd").toString()
-                    );
+        for (String result : results) {
+            System.out.println("("+ ++i +") " + result);
         }
     }
 }
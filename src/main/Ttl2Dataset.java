@@ -25,13 +25,27 @@ package main;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import org.apache.jena.rdf.model.Model;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import rdfdata.RdfRepository;
+import rdfdata.RepositorySession;
 
 /**
+ * Importa triplas de arquivos para o repositório.
+ *
+ * <p>
+ * Sem 'bulkloader' em risadinha.properties, o arquivo 'turtlefilename' é lido para um modelo em uma única
+ * transação. Com 'bulkloader' igual a basic, sequential, phased ou parallel, os arquivos indicados na linha de
+ * comando (ou, na ausência deles, 'turtlefilename') são carregados diretamente no repositório pelo carregador em
+ * lote (ver {@link RdfRepository#bulkLoad(List, RdfRepository.BulkLoader)}), aceitando Turtle, N-Triples e suas
+ * versões compactadas com gzip. 'repositorytype' seleciona TDB1 (tdb, padrão) ou TDB2 (tdb2); os carregadores
+ * em lote requerem TDB2, e com TDB1 'bulkloader' é rejeitado.</p>
+ *
  * @author ricarte at ft.unicamp.br
  */
 public class Ttl2Dataset {
@@ -44,13 +58,27 @@ public class Ttl2Dataset {
         try {
             Properties blogProp = new Properties();
             blogProp.load(new FileInputStream("risadinha.properties"));
-            RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"));
-            Model model = dataset.getModel();
+            RdfRepository dataset = new RdfRepository(blogProp.getProperty("repositorydir"),
+                    RdfRepository.Backend.valueOf(blogProp.getProperty("repositorytype", "tdb").toUpperCase()));
+            dataset.syncPersons();
             String filename = blogProp.getProperty("turtlefilename");
-            dataset.beginWrite();
-            model = model.read(filename);
-            log.info("Imported " + model.size() + " statements from " + filename);
-            dataset.commit();
+            String bulkLoader = blogProp.getProperty("bulkloader");
+            if (bulkLoader != null && dataset.getBackend() != RdfRepository.Backend.TDB2) {
+                log.error("'bulkloader' requer repositorytype=tdb2; nada foi importado");
+            } else if (bulkLoader != null) {
+                List<String> files = args.length > 0 ? Arrays.asList(args) : Collections.singletonList(filename);
+                long start = System.nanoTime();
+                long size = dataset.bulkLoad(files, RdfRepository.BulkLoader.valueOf(bulkLoader.toUpperCase()));
+                double seconds = (System.nanoTime() - start) / 1e9;
+                log.info(String.format("Parsed %d statements from %s in %.1f s (%.0f statements/s)", size, files,
+                        seconds, size / Math.max(seconds, 1e-3)));
+            } else {
+                try (RepositorySession session = dataset.write()) {
+                    Model model = session.getModel().read(filename);
+                    log.info("Imported " + model.size() + " statements from " + filename);
+                    session.commit();
+                }
+            }
         } catch (IOException ex) {
             log.error("Durante conversão para RDF", ex);
         }
@@ -0,0 +1,385 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package rdfdata;
+
+import bloggerdata.Blog;
+import bloggerdata.Post;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.jena.rdf.model.Model;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import risadinha.ParseCache;
+import risadinha.ResumoHtmlContentParser;
+import risadinha.RisadinhaPost;
+import risadinha.SectionMarkers;
+
+/**
+ * Conversão do blog para RDF em etapas concorrentes: obtenção das páginas da API Blogger, análise do HTML de cada
+ * publicação, construção das triplas e gravação em lotes no repositório. As etapas são ligadas por filas limitadas,
+ * de modo que a latência da rede, a análise com Jsoup e a escrita no TDB se sobreponham.
+ *
+ * <p>
+ * As quantidades de threads são lidas do arquivo de propriedades: 'parsethreads' (análise do HTML), 'graphthreads'
+ * (construção das triplas) e 'queuesize' (capacidade de cada fila). A obtenção das páginas e a gravação usam uma
+ * única thread cada.</p>
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public class ConversionPipeline {
+
+    static Logger log = LogManager.getRootLogger();
+
+    /**
+     * Capacidade padrão das filas entre etapas.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    private static final Object END = new Object();
+
+    private final RdfRepository repository;
+    private final int parseThreads;
+    private final int graphThreads;
+    private final int queueSize;
+    private SectionMarkers markers = SectionMarkers.DEFAULT;
+    private ResumoHtmlContentParser.Mode htmlParser = ResumoHtmlContentParser.Mode.DOM;
+    private ParseCache parseCache;
+
+    /**
+     * Configura o pipeline.
+     *
+     * @param repository Repositório que recebe as triplas.
+     * @param parseThreads Quantidade de threads de análise do HTML.
+     * @param graphThreads Quantidade de threads de construção das triplas.
+     * @param queueSize Capacidade de cada fila entre etapas.
+     */
+    public ConversionPipeline(RdfRepository repository, int parseThreads, int graphThreads, int queueSize) {
+        this.repository = repository;
+        this.parseThreads = Math.max(1, parseThreads);
+        this.graphThreads = Math.max(1, graphThreads);
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    /**
+     * Configura o pipeline a partir das propriedades 'parsethreads', 'graphthreads' e 'queuesize'; os marcadores
+     * das seções das publicações são lidos das propriedades 'marker...' (ver {@link SectionMarkers}) e, com
+     * 'htmlparser' igual a streaming, o HTML é analisado sem construir a árvore do documento
+     * (ver {@link ResumoHtmlContentParser.Mode}).
+     *
+     * @param repository Repositório que recebe as triplas.
+     * @param prop Propriedades do projeto.
+     */
+    public ConversionPipeline(RdfRepository repository, Properties prop) {
+        this(repository,
+                Integer.parseInt(prop.getProperty("parsethreads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                Integer.parseInt(prop.getProperty("graphthreads", "2")),
+                Integer.parseInt(prop.getProperty("queuesize", String.valueOf(DEFAULT_QUEUE_SIZE))));
+        markers = SectionMarkers.fromProperties(prop);
+        htmlParser = ResumoHtmlContentParser.Mode.valueOf(prop.getProperty("htmlparser", "dom").toUpperCase());
+    }
+
+    /**
+     * Obtém as seções das publicações do cache de análise, que substitui os marcadores e a forma de análise
+     * definidos nas propriedades.
+     *
+     * @param parseCache Cache de análise, ou null para analisar todas as publicações.
+     */
+    public void setParseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Converte todas as publicações do blog e as grava no repositório. Retorna quando todas as etapas terminam.
+     * Publicações que falham na análise ou na construção das triplas são registradas no log e ignoradas.
+     *
+     * @param blog O blog a ser convertido.
+     * @throws RuntimeException Falha na obtenção das publicações ou na gravação; as etapas são concluídas antes de
+     * a falha ser repassada.
+     * @throws IllegalStateException Thread interrompida enquanto aguardava as etapas.
+     */
+    public void run(Blog blog) {
+        repository.syncPersons();
+        RdfGraph graph = new RdfGraph();
+        repository.add(graph.addBlog(blog));
+        Model personsRdf = repository.getPersons();
+
+        StageQueue toParse = new StageQueue("fetch -> parse", queueSize);
+        StageQueue toGraph = new StageQueue("parse -> graph", queueSize);
+        StageQueue toWrite = new StageQueue("graph -> write", queueSize);
+        Stage fetch = new Stage("fetch", 1);
+        Stage parse = new Stage("parse", parseThreads);
+        Stage build = new Stage("graph", graphThreads);
+        Stage write = new Stage("write", 1);
+
+        List<Thread> threads = new ArrayList<>();
+        AtomicReference<RuntimeException> fetchFailure = new AtomicReference<>();
+        threads.add(fetch.start(0, () -> {
+            Iterator<Post> posts = blog.iteratePosts();
+            try {
+                while (true) {
+                    long start = System.nanoTime();
+                    if (!posts.hasNext()) {
+                        break;
+                    }
+                    Post post = posts.next();
+                    fetch.done(start);
+                    toParse.put(post);
+                }
+            } catch (RuntimeException ex) {
+                fetchFailure.set(ex);
+            }
+        }, toParse, parseThreads));
+        for (int i = 0; i < parseThreads; ++i) {
+            threads.add(parse.start(i, () -> {
+                Object item;
+                while ((item = toParse.take()) != END) {
+                    long start = System.nanoTime();
+                    try {
+                        RisadinhaPost post = (parseCache != null
+                                ? new RisadinhaPost((Post) item, parseCache, true)
+                                : new RisadinhaPost((Post) item, markers, htmlParser, true)).parse();
+                        parse.done(start);
+                        toGraph.put(post);
+                    } catch (RuntimeException ex) {
+                        log.warn("Analisando " + ((Post) item).getTitle(), ex);
+                    }
+                }
+            }, toGraph, graphThreads));
+        }
+        for (int i = 0; i < graphThreads; ++i) {
+            threads.add(build.start(i, () -> {
+                Object item;
+                while ((item = toGraph.take()) != END) {
+                    long start = System.nanoTime();
+                    RisadinhaPost post = (RisadinhaPost) item;
+                    try {
+                        Model fragment = graph.addPost(post, personsRdf);
+                        build.done(start);
+                        toWrite.put(new Converted(post.getTitle(), fragment));
+                    } catch (RuntimeException ex) {
+                        log.warn("Construindo triplas de " + post.getTitle(), ex);
+                    }
+                }
+            }, toWrite, 1));
+        }
+        AtomicReference<RuntimeException> writeFailure = new AtomicReference<>();
+        threads.add(write.start(0, () -> {
+            int count = 0;
+            int pending = 0;
+            Model batch = graph.createFragment();
+            Object item;
+            // após uma falha de gravação, a fila continua a ser esvaziada até o fim, para não bloquear as etapas
+            // anteriores
+            while ((item = toWrite.take()) != END) {
+                if (writeFailure.get() != null) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                Converted converted = (Converted) item;
+                batch.add(converted.fragment);
+                log.info("#" + ++count + ": " + converted.title);
+                if (++pending == repository.getBatchSize()) {
+                    try {
+                        repository.add(batch);
+                    } catch (RuntimeException ex) {
+                        writeFailure.set(ex);
+                    }
+                    batch = graph.createFragment();
+                    pending = 0;
+                }
+                write.done(start);
+            }
+            if (pending > 0 && writeFailure.get() == null) {
+                long start = System.nanoTime();
+                try {
+                    repository.add(batch);
+                } catch (RuntimeException ex) {
+                    writeFailure.set(ex);
+                }
+                write.addBusy(start);
+            }
+        }, null, 0));
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Pipeline interrompido", ex);
+            }
+        }
+
+        log.info("Total de " + repository.getTriplesWritten() + " triplas gravadas em "
+                + repository.getCommits() + " transações");
+        for (Stage stage : new Stage[]{fetch, parse, build, write}) {
+            log.info(stage.report());
+        }
+        log.info(graph.getPersonStatistics());
+        for (StageQueue queue : new StageQueue[]{toParse, toGraph, toWrite}) {
+            log.info(queue.report());
+        }
+        if (writeFailure.get() != null) {
+            log.error("Gravação interrompida; as publicações seguintes não foram gravadas", writeFailure.get());
+            if (fetchFailure.get() != null) {
+                writeFailure.get().addSuppressed(fetchFailure.get());
+            }
+            throw writeFailure.get();
+        }
+        if (fetchFailure.get() != null) {
+            log.error("Obtenção interrompida; as publicações seguintes não foram convertidas", fetchFailure.get());
+            throw fetchFailure.get();
+        }
+    }
+
+    /**
+     * Triplas de uma publicação, prontas para gravação.
+     */
+    private static final class Converted {
+
+        private final String title;
+        private final Model fragment;
+
+        Converted(String title, Model fragment) {
+            this.title = title;
+            this.fragment = fragment;
+        }
+    }
+
+    /**
+     * Fila limitada entre duas etapas, com registro da profundidade observada a cada inserção.
+     */
+    private static final class StageQueue {
+
+        private final String name;
+        private final BlockingQueue<Object> queue;
+        private final AtomicInteger maxDepth = new AtomicInteger();
+        private final AtomicLong depthSum = new AtomicLong();
+        private final AtomicLong puts = new AtomicLong();
+
+        StageQueue(String name, int capacity) {
+            this.name = name;
+            queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void put(Object item) {
+            try {
+                queue.put(item);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Pipeline interrompido", ex);
+            }
+            int depth = queue.size();
+            maxDepth.accumulateAndGet(depth, Math::max);
+            depthSum.addAndGet(depth);
+            puts.incrementAndGet();
+        }
+
+        Object take() {
+            try {
+                return queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return END;
+            }
+        }
+
+        String report() {
+            long n = puts.get();
+            return String.format("Fila %s: profundidade máxima %d, média %.1f (capacidade %d)",
+                    name, maxDepth.get(), n == 0 ? 0.0 : (double) depthSum.get() / n,
+                    queue.size() + queue.remainingCapacity());
+        }
+    }
+
+    /**
+     * Etapa do pipeline executada por uma ou mais threads, com contagem de itens e do tempo ocupado.
+     */
+    private static final class Stage {
+
+        private final String name;
+        private final int threads;
+        private final AtomicInteger running;
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastEnd = new AtomicLong();
+
+        Stage(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+            running = new AtomicInteger(threads);
+        }
+
+        /**
+         * Inicia uma thread da etapa; ao terminar, mesmo por falha, a última thread da etapa sinaliza o fim para as
+         * threads da etapa seguinte.
+         */
+        Thread start(int index, Runnable body, StageQueue next, int consumers) {
+            Thread thread = new Thread(() -> {
+                firstStart.accumulateAndGet(System.nanoTime(), Math::min);
+                try {
+                    body.run();
+                } finally {
+                    finish(next, consumers);
+                }
+            }, "pipeline-" + name + "-" + index);
+            thread.start();
+            return thread;
+        }
+
+        void done(long start) {
+            addBusy(start);
+            items.incrementAndGet();
+        }
+
+        void addBusy(long start) {
+            busyNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        private void finish(StageQueue next, int consumers) {
+            lastEnd.accumulateAndGet(System.nanoTime(), Math::max);
+            if (running.decrementAndGet() == 0 && next != null) {
+                for (int i = 0; i < consumers; ++i) {
+                    next.put(END);
+                }
+            }
+        }
+
+        String report() {
+            double elapsed = Math.max(1, lastEnd.get() - firstStart.get()) / 1e9;
+            double busy = busyNanos.get() / 1e9;
+            return String.format("Etapa %s (%d threads): %d itens em %.1f s, %.1f itens/s, ocupação %.0f%%",
+                    name, threads, items.get(), elapsed, items.get() / elapsed,
+                    100.0 * busy / (elapsed * threads));
+        }
+    }
+}
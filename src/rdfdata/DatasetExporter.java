@@ -0,0 +1,284 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package rdfdata;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import org.apache.jena.atlas.RuntimeIOException;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Exporta o repositório para vários arquivos em uma única leitura, dentro de uma transação de leitura. As
+ * quádruplas lidas são repassadas em lotes a uma thread de gravação por arquivo, cada uma com seu formato; a fila
+ * de cada thread é limitada, de modo que a leitura acompanha a gravação mais lenta sem acumular o repositório em
+ * memória. Com um único arquivo, a gravação é feita na própria thread de leitura.
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+class DatasetExporter {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Quad[] END = new Quad[0];
+
+    private final Dataset dataset;
+    private final List<Target> targets = new ArrayList<>();
+
+    /**
+     * Prepara a exportação.
+     *
+     * @param dataset Repositório a exportar.
+     * @param files Arquivos a criar, com seus formatos; nomes terminados em .gz são compactados com gzip.
+     */
+    DatasetExporter(Dataset dataset, Map<Path, ExportFormat> files) {
+        this.dataset = dataset;
+        files.forEach((file, format) -> targets.add(new Target(file, format)));
+    }
+
+    /**
+     * Lê o repositório e grava todos os arquivos.
+     *
+     * @return Quantidade de triplas ou quádruplas gravadas em cada arquivo.
+     * @throws IOException Falha na criação ou gravação de algum arquivo; nenhum resultado é parcial silenciosamente.
+     */
+    Map<Path, Long> export() throws IOException {
+        try {
+            for (Target target : targets) {
+                target.open();
+            }
+            if (targets.size() == 1) {
+                exportSequential(targets.get(0));
+            } else {
+                exportParallel();
+            }
+            for (Target target : targets) {
+                target.close();
+            }
+        } finally {
+            for (Target target : targets) {
+                target.abort();
+            }
+        }
+        Map<Path, Long> counts = new LinkedHashMap<>();
+        for (Target target : targets) {
+            counts.put(target.file, target.count);
+        }
+        return counts;
+    }
+
+    private void exportSequential(Target target) throws IOException {
+        try (RepositorySession session = new RepositorySession(dataset, ReadWrite.READ)) {
+            target.start(session.getModel().getNsPrefixMap());
+            Iterator<Quad> it = dataset.asDatasetGraph().find();
+            while (it.hasNext()) {
+                target.send(it.next());
+            }
+            target.finish();
+        } catch (UncheckedIOException | RuntimeIOException | RiotException ex) {
+            throw toIOException(ex);
+        }
+    }
+
+    private void exportParallel() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(targets.size());
+        List<BlockingQueue<Quad[]>> queues = new ArrayList<>();
+        List<Future<Void>> writers = new ArrayList<>();
+        try {
+            try (RepositorySession session = new RepositorySession(dataset, ReadWrite.READ)) {
+                Map<String, String> prefixes = session.getModel().getNsPrefixMap();
+                for (Target target : targets) {
+                    BlockingQueue<Quad[]> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+                    queues.add(queue);
+                    writers.add(executor.submit(() -> target.write(prefixes, queue)));
+                }
+                Iterator<Quad> it = dataset.asDatasetGraph().find();
+                Quad[] batch = new Quad[BATCH_SIZE];
+                int n = 0;
+                while (it.hasNext()) {
+                    batch[n++] = it.next();
+                    if (n == BATCH_SIZE) {
+                        put(queues, batch);
+                        batch = new Quad[BATCH_SIZE];
+                        n = 0;
+                    }
+                }
+                if (n > 0) {
+                    put(queues, Arrays.copyOf(batch, n));
+                }
+            } finally {
+                put(queues, END);
+            }
+            for (Future<Void> writer : writers) {
+                writer.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Exportação interrompida", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            if (ex.getCause() instanceof UncheckedIOException || ex.getCause() instanceof RuntimeIOException
+                    || ex.getCause() instanceof RiotException) {
+                throw toIOException((RuntimeException) ex.getCause());
+            }
+            throw new IOException("Durante exportação", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Falha de gravação relatada pelo Jena ou pelos fluxos como exceção não verificada.
+     */
+    private static IOException toIOException(RuntimeException ex) {
+        if (ex.getCause() instanceof IOException) {
+            return (IOException) ex.getCause();
+        }
+        return new IOException(ex.getMessage(), ex);
+    }
+
+    private static void put(List<BlockingQueue<Quad[]>> queues, Quad[] batch) throws InterruptedException {
+        for (BlockingQueue<Quad[]> queue : queues) {
+            queue.put(batch);
+        }
+    }
+
+    /**
+     * Arquivo de destino da exportação.
+     */
+    private static final class Target {
+
+        private final Path file;
+        private final ExportFormat format;
+        private OutputStream out;
+        private StreamRDF stream;
+        private long count;
+
+        Target(Path file, ExportFormat format) {
+            this.file = file;
+            this.format = format;
+        }
+
+        void open() throws IOException {
+            out = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)),
+                    BUFFER_SIZE);
+            if (file.getFileName().toString().endsWith(".gz")) {
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            }
+            stream = format.open(out);
+        }
+
+        void start(Map<String, String> prefixes) {
+            stream.start();
+            prefixes.forEach(stream::prefix);
+        }
+
+        void send(Quad quad) {
+            if (format.hasQuads()) {
+                stream.quad(quad);
+            } else if (quad.isDefaultGraph()) {
+                stream.triple(quad.asTriple());
+            } else {
+                return;
+            }
+            ++count;
+        }
+
+        void finish() {
+            stream.finish();
+        }
+
+        /**
+         * Grava os lotes da fila até o lote final. Após uma falha, continua a esvaziar a fila, para não bloquear a
+         * leitura do repositório, e sinaliza a falha ao final.
+         */
+        Void write(Map<String, String> prefixes, BlockingQueue<Quad[]> queue) throws InterruptedException {
+            RuntimeException failure = null;
+            try {
+                start(prefixes);
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+            for (Quad[] batch = queue.take(); batch != END; batch = queue.take()) {
+                if (failure == null) {
+                    try {
+                        for (Quad quad : batch) {
+                            send(quad);
+                        }
+                    } catch (RuntimeException ex) {
+                        failure = ex;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            finish();
+            return null;
+        }
+
+        void close() throws IOException {
+            OutputStream o = out;
+            out = null;
+            o.close();
+        }
+
+        void abort() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ex) {
+                    // já há uma falha a sinalizar
+                }
+                out = null;
+            }
+        }
+    }
+}
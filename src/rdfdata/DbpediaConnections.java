@@ -25,10 +25,11 @@ package rdfdata;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.NodeIterator;
+import java.util.Set;
+import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.OWL;
@@ -44,7 +45,6 @@ public class DbpediaConnections {
     static Logger log = LogManager.getRootLogger();
 
     RdfRepository dataset;
-    Model blogRdf;
 
     public DbpediaConnections() {
         Properties blogProp = new Properties();
@@ -53,22 +53,21 @@ public class DbpediaConnections {
         } catch (IOException ex) {
             log.warn(ex.getLocalizedMessage());
         }
-        dataset = new RdfRepository(blogProp.getProperty("repositorydir"));
-        blogRdf = dataset.getModel();
+        dataset = new RdfRepository(blogProp.getProperty("repositorydir"),
+                RdfRepository.Backend.valueOf(blogProp.getProperty("repositorytype", "tdb").toUpperCase()));
     }
 
-    public NodeIterator getSubjects() {
-        dataset.beginRead();
-        NodeIterator subjects = blogRdf.listObjectsOfProperty(DCTerms.subject);
-        dataset.commit();
-        return subjects;
+    /**
+     * Obtém os assuntos (dct:subject) das publicações.
+     * @return Assuntos distintos, lidos em uma única sessão de leitura.
+     */
+    public Set<RDFNode> getSubjects() {
+        return dataset.executeRead(session -> new LinkedHashSet<>(session.listObjects(DCTerms.subject)));
     }
 
     public String getLabel(Resource node) {
-        dataset.beginRead();
-        String label = blogRdf.getProperty(node, RDFS.label).getLiteral().getString();
-        dataset.commit();
-        return label;
+        return dataset.executeRead(session ->
+                session.getModel().getProperty(node, RDFS.label).getLiteral().getString());
     }
 
     private Resource searchThing(String label) {
@@ -115,9 +114,7 @@ public class DbpediaConnections {
     }
 
     public void add(Resource node, Resource dbpediaLabel) {
-        dataset.beginWrite();
-        blogRdf.add(blogRdf.createStatement(node, OWL.sameAs, dbpediaLabel));
-        dataset.commit();
+        dataset.executeWrite(session -> session.getModel().add(node, OWL.sameAs, dbpediaLabel));
     }
 
 
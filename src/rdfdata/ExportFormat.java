@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package rdfdata;
+
+import java.io.OutputStream;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+
+/**
+ * Formatos de exportação do repositório, todos gravados à medida que as triplas são lidas, sem montar o grafo em
+ * memória. Os formatos de triplas recebem apenas o grafo default; os de quádruplas, também os grafos nomeados
+ * (como os metadados de {@link RdfRepository#syncPersons()}).
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public enum ExportFormat {
+
+    /**
+     * N-Triples em UTF-8.
+     */
+    NTRIPLES(".nt", false),
+    /**
+     * Turtle em blocos: as triplas de um mesmo sujeito são agrupadas, com os prefixos do repositório.
+     */
+    TURTLE(".ttl", false),
+    /**
+     * N-Quads em UTF-8.
+     */
+    NQUADS(".nq", true),
+    /**
+     * JSON-LD expandido, um objeto por bloco de triplas de um mesmo sujeito.
+     */
+    JSONLD(".jsonld", false),
+    /**
+     * RDF Thrift, formato binário do Jena, de análise mais rápida e arquivo maior que o Turtle.
+     */
+    THRIFT(".trdf", true);
+
+    private final String extension;
+    private final boolean quads;
+
+    ExportFormat(String extension, boolean quads) {
+        this.extension = extension;
+        this.quads = quads;
+    }
+
+    /**
+     * Obtém a extensão usual dos arquivos do formato.
+     *
+     * @return Extensão, com o ponto inicial.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Indica se o formato inclui os grafos nomeados.
+     *
+     * @return true para formatos de quádruplas.
+     */
+    public boolean hasQuads() {
+        return quads;
+    }
+
+    /**
+     * Deduz o formato pela extensão do arquivo, desconsiderando um sufixo .gz.
+     *
+     * @param filename Nome do arquivo.
+     * @return O formato.
+     * @throws IllegalArgumentException Extensão desconhecida.
+     */
+    public static ExportFormat fromFileName(String filename) {
+        String name = filename.endsWith(".gz") ? filename.substring(0, filename.length() - 3) : filename;
+        for (ExportFormat format : values()) {
+            if (name.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Formato de exportação desconhecido: " + filename);
+    }
+
+    /**
+     * Cria o destino das triplas no formato.
+     *
+     * @param out Fluxo de saída, que não é fechado.
+     * @return Destino que deve ser iniciado e finalizado (start/finish) pelo chamador.
+     */
+    StreamRDF open(OutputStream out) {
+        switch (this) {
+            case NTRIPLES:
+                return StreamRDFWriter.getWriterStream(out, RDFFormat.NTRIPLES_UTF8, null);
+            case TURTLE:
+                return StreamRDFWriter.getWriterStream(out, RDFFormat.TURTLE_BLOCKS, null);
+            case NQUADS:
+                return StreamRDFWriter.getWriterStream(out, RDFFormat.NQUADS_UTF8, null);
+            case JSONLD:
+                return new JsonLdStreamWriter(out);
+            default:
+                return StreamRDFWriter.getWriterStream(out, RDFFormat.RDF_THRIFT, null);
+        }
+    }
+}
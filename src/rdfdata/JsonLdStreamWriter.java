@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package rdfdata;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Grava triplas em JSON-LD expandido à medida que chegam. O Jena só escreve JSON-LD a partir de um grafo completo;
+ * aqui cada sequência de triplas de um mesmo sujeito vira um objeto do vetor principal. Um sujeito que reaparece
+ * mais adiante gera outro objeto com o mesmo @id, que os leitores de JSON-LD juntam ao primeiro. Quádruplas fora do
+ * grafo default são ignoradas.
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+class JsonLdStreamWriter implements StreamRDF {
+
+    private final JsonWriter json;
+    private Node subject;
+    private final Map<String, List<Node>> properties = new LinkedHashMap<>();
+
+    /**
+     * Prepara a gravação.
+     *
+     * @param out Fluxo de saída, que não é fechado.
+     */
+    JsonLdStreamWriter(OutputStream out) {
+        json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        try {
+            json.beginArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        if (!triple.getSubject().equals(subject)) {
+            flushSubject();
+            subject = triple.getSubject();
+        }
+        properties.computeIfAbsent(triple.getPredicate().getURI(), p -> new ArrayList<>()).add(triple.getObject());
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        if (quad.isDefaultGraph()) {
+            triple(quad.asTriple());
+        }
+    }
+
+    @Override
+    public void base(String base) {
+        // JSON-LD expandido: IRIs sempre completos
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+        // JSON-LD expandido: IRIs sempre completos
+    }
+
+    @Override
+    public void finish() {
+        flushSubject();
+        try {
+            json.endArray();
+            json.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void flushSubject() {
+        if (subject == null) {
+            return;
+        }
+        try {
+            json.beginObject();
+            json.name("@id").value(id(subject));
+            for (Map.Entry<String, List<Node>> property : properties.entrySet()) {
+                json.name(property.getKey()).beginArray();
+                for (Node object : property.getValue()) {
+                    writeObject(object);
+                }
+                json.endArray();
+            }
+            json.endObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        subject = null;
+        properties.clear();
+    }
+
+    private void writeObject(Node object) throws IOException {
+        json.beginObject();
+        if (object.isLiteral()) {
+            json.name("@value").value(object.getLiteralLexicalForm());
+            String lang = object.getLiteralLanguage();
+            if (!lang.isEmpty()) {
+                json.name("@language").value(lang);
+            } else if (!XSDDatatype.XSDstring.getURI().equals(object.getLiteralDatatypeURI())) {
+                json.name("@type").value(object.getLiteralDatatypeURI());
+            }
+        } else {
+            json.name("@id").value(id(object));
+        }
+        json.endObject();
+    }
+
+    private static String id(Node node) {
+        return node.isBlank() ? "_:" + NodeFmtLib.encodeBNodeLabel(node.getBlankNodeLabel()) : node.getURI();
+    }
+}
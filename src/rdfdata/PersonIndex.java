@@ -0,0 +1,227 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package rdfdata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.text.similarity.FuzzyScore;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.NodeIterator;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * Índice dos nomes (foaf:name) dos colaboradores, construído uma única vez, para associar o nome de um autor ou
+ * revisor a um colaborador. O resultado é o mesmo da busca exata seguida da comparação com {@link FuzzyScore} de
+ * todos os nomes: vale o primeiro nome com a maior pontuação, desde que esta alcance {@link #THRESHOLD}.
+ *
+ * <p>
+ * Em vez de pontuar todos os nomes, o índice usa um limite superior da pontuação: cada caractere da consulta
+ * encontrado no nome vale no máximo 1 ponto, e os 2 pontos de bônus por caracteres consecutivos só são possíveis
+ * para os pares de caracteres da consulta que também aparecem no nome. Os pares de cada nome ficam em um índice
+ * invertido, de modo que só os nomes com pares em comum com a consulta são considerados, do maior limite para o
+ * menor, até que o limite fique abaixo da melhor pontuação já obtida. O nome igual à consulta sem acentos nem
+ * maiúsculas é pontuado primeiro, o que em geral encerra a busca logo.</p>
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public class PersonIndex {
+
+    /**
+     * Pontuação mínima para que um nome seja associado a um colaborador.
+     */
+    public static final int THRESHOLD = 15;
+
+    private static final int[] NONE = new int[0];
+
+    private final Model model;
+    private final FuzzyScore fuzz;
+    private final Locale locale;
+    private final List<Name> names = new ArrayList<>();
+    private final Map<String, Resource> exact = new HashMap<>();
+    private final Map<String, Integer> folded = new HashMap<>();
+    private final Map<Integer, int[]> bigrams = new HashMap<>();
+    private final int[] byLength;
+
+    /**
+     * Constrói o índice dos nomes do modelo.
+     *
+     * @param personsRdf Subgrafo com dados dos colaboradores do Projeto Dr Risadinha.
+     */
+    public PersonIndex(Model personsRdf) {
+        model = personsRdf;
+        locale = Locale.getDefault();
+        fuzz = new FuzzyScore(locale);
+        Property name = personsRdf.getProperty(Namespaces.NS_FOAF, "name");
+        Map<Integer, List<Integer>> postings = new HashMap<>();
+        NodeIterator nit = personsRdf.listObjectsOfProperty(name);
+        while (nit.hasNext()) {
+            RDFNode node = nit.nextNode();
+            ResIterator it = personsRdf.listSubjectsWithProperty(name, node);
+            Resource subject = it.nextResource();
+            it.close();
+            String lower = node.toString().toLowerCase(locale);
+            int index = names.size();
+            names.add(new Name(node.toString(), lower, subject));
+            if (node.isLiteral() && node.asLiteral().getLanguage().isEmpty()
+                    && node.asLiteral().getLexicalForm().equals(node.toString())) {
+                exact.putIfAbsent(node.asLiteral().getLexicalForm(), subject);
+            }
+            folded.putIfAbsent(StringUtils.stripAccents(lower), index);
+            for (int i = 1; i < lower.length(); ++i) {
+                List<Integer> list = postings.computeIfAbsent(bigram(lower, i), k -> new ArrayList<>());
+                if (list.isEmpty() || list.get(list.size() - 1) != index) {
+                    list.add(index);
+                }
+            }
+        }
+        for (Map.Entry<Integer, List<Integer>> e : postings.entrySet()) {
+            bigrams.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        byLength = new int[names.size()];
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> names.get(b).lower.length() - names.get(a).lower.length());
+        for (int i = 0; i < order.length; ++i) {
+            byLength[i] = order[i];
+        }
+    }
+
+    /**
+     * Obtém o modelo a partir do qual o índice foi construído.
+     *
+     * @return Subgrafo dos colaboradores.
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * Associa um nome a um colaborador: pelo nome idêntico ou, se não há, pelo nome de maior pontuação.
+     *
+     * @param person Nome do autor ou revisor.
+     * @return Recurso do colaborador, ou null se nenhum nome alcança {@link #THRESHOLD}.
+     */
+    public Resource resolve(String person) {
+        Resource resource = exact.get(person);
+        if (resource != null) {
+            return resource;
+        }
+        String query = person.toLowerCase(locale);
+        int length = query.length();
+
+        // limite superior de cada nome com pares em comum: caracteres + 2 por par comum
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (int i = 1; i < length; ++i) {
+            for (int index : bigrams.getOrDefault(bigram(query, i), NONE)) {
+                shared.merge(index, 1, Integer::sum);
+            }
+        }
+        // limite nos 32 bits altos, índice nos baixos: a ordem crescente, percorrida do fim, é a dos limites
+        long[] candidates = new long[shared.size()];
+        int n = 0;
+        for (Map.Entry<Integer, Integer> e : shared.entrySet()) {
+            int index = e.getKey();
+            long bound = Math.min(length, names.get(index).lower.length()) + 2 * e.getValue();
+            candidates[n++] = bound << 32 | index;
+        }
+        Arrays.sort(candidates);
+
+        int bestScore = 0;
+        int best = -1;
+        Integer seed = folded.get(StringUtils.stripAccents(query));
+        if (seed != null) {
+            bestScore = score(person, seed);
+            best = bestScore > 0 ? seed : -1;
+        }
+        // nomes com pares em comum, do maior limite para o menor, intercalados com os demais, cujo limite é
+        // apenas o comprimento
+        int i = 0;
+        int j = 0;
+        while (true) {
+            while (j < byLength.length && shared.containsKey(byLength[j])) {
+                ++j;
+            }
+            int withPairs = i < n ? (int) (candidates[n - 1 - i] >>> 32) : -1;
+            int withoutPairs = j < byLength.length ? Math.min(length, names.get(byLength[j]).lower.length()) : -1;
+            int index;
+            int bound;
+            if (withPairs >= withoutPairs) {
+                if (i == n) {
+                    break;
+                }
+                index = (int) candidates[n - 1 - i++];
+                bound = withPairs;
+            } else {
+                index = byLength[j++];
+                bound = withoutPairs;
+            }
+            if (bound < THRESHOLD || bound < bestScore) {
+                break;
+            }
+            if (bound == bestScore && index > best || index == best) {
+                continue;
+            }
+            int score = score(person, index);
+            if (score > bestScore || score == bestScore && score > 0 && index < best) {
+                bestScore = score;
+                best = index;
+            }
+        }
+        return bestScore >= THRESHOLD ? names.get(best).subject : null;
+    }
+
+    private int score(String person, int index) {
+        return fuzz.fuzzyScore(person, names.get(index).text);
+    }
+
+    private static int bigram(String s, int i) {
+        return s.charAt(i - 1) << 16 | s.charAt(i);
+    }
+
+    /**
+     * Nome de um colaborador, também em minúsculas, e o recurso que o representa.
+     */
+    private static final class Name {
+
+        private final String text;
+        private final String lower;
+        private final Resource subject;
+
+        Name(String text, String lower, Resource subject) {
+            this.text = text;
+            this.lower = lower;
+            this.subject = subject;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package rdfdata;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.text.similarity.FuzzyScore;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * Reconciliação em lote das pessoas do repositório: localiza pares de recursos distintos cujos nomes
+ * provavelmente designam a mesma pessoa, como um autor cadastrado com outra grafia e o colaborador
+ * correspondente.
+ *
+ * <p>
+ * Os nomes são lidos uma única vez ({@link RdfRepository#getPersonNames()}) e agrupados por chaves de bloqueio
+ * obtidas do nome sem acentos e em minúsculas: as iniciais do primeiro e do último nome e o último nome completo.
+ * Apenas os pares que compartilham alguma chave são comparados, em paralelo, com {@link FuzzyScore}. A semelhança
+ * de um par é a pontuação obtida ao procurar o nome mais curto (a consulta) dentro do mais longo (o termo),
+ * dividida pela maior pontuação possível para o nome mais curto.</p>
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public class PersonReconciliation {
+
+    /**
+     * Semelhança mínima padrão para que um par seja relatado.
+     */
+    public static final double DEFAULT_THRESHOLD = 0.7;
+
+    private static final Set<String> PARTICLES = new HashSet<>(
+            Arrays.asList("de", "da", "do", "das", "dos", "e"));
+
+    private final List<Name> names = new ArrayList<>();
+    private final FuzzyScore fuzz = new FuzzyScore(Locale.ROOT);
+    private long comparisons;
+
+    /**
+     * Prepara a reconciliação das pessoas de um repositório.
+     *
+     * @param repository O repositório.
+     */
+    public PersonReconciliation(RdfRepository repository) {
+        this(repository.getPersonNames());
+    }
+
+    /**
+     * Prepara a reconciliação das pessoas descritas em um modelo.
+     *
+     * @param persons Modelo com rdf:type foaf:Person e foaf:name das pessoas.
+     */
+    public PersonReconciliation(Model persons) {
+        Property name = persons.createProperty(Namespaces.NS_FOAF, "name");
+        Resource person = persons.createResource(Namespaces.NS_FOAF + "Person");
+        StmtIterator it = persons.listStatements(null, name, (String) null);
+        while (it.hasNext()) {
+            Statement st = it.nextStatement();
+            if (st.getSubject().isURIResource() && st.getObject().isLiteral()
+                    && persons.contains(st.getSubject(), RDF.type, person)) {
+                names.add(new Name(st.getSubject().getURI(), st.getString()));
+            }
+        }
+        names.sort(Comparator.comparing((Name n) -> n.uri).thenComparing(n -> n.text));
+    }
+
+    /**
+     * Compara os pares de nomes que compartilham alguma chave de bloqueio.
+     *
+     * @param threshold Semelhança mínima, entre 0 e 1, dos pares devolvidos.
+     * @return Pares com semelhança mínima, do mais semelhante para o menos semelhante.
+     */
+    public List<Match> reconcile(double threshold) {
+        Map<String, List<Integer>> blocks = new HashMap<>();
+        for (int i = 0; i < names.size(); ++i) {
+            for (String key : names.get(i).keys) {
+                blocks.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+        Set<Long> pairs = new HashSet<>();
+        for (List<Integer> block : blocks.values()) {
+            for (int a = 0; a < block.size(); ++a) {
+                for (int b = a + 1; b < block.size(); ++b) {
+                    int i = block.get(a);
+                    int j = block.get(b);
+                    if (!names.get(i).uri.equals(names.get(j).uri)) {
+                        pairs.add((long) Math.min(i, j) << 32 | Math.max(i, j));
+                    }
+                }
+            }
+        }
+        comparisons = pairs.size();
+        return pairs.parallelStream()
+                .map(pair -> score(names.get((int) (pair >>> 32)), names.get((int) (long) pair)))
+                .filter(match -> match.similarity >= threshold)
+                .sorted(Comparator.comparingDouble((Match m) -> -m.similarity)
+                        .thenComparing(m -> m.first.uri).thenComparing(m -> m.second.uri)
+                        .thenComparing(m -> m.first.text).thenComparing(m -> m.second.text))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Obter a quantidade de nomes lidos do repositório.
+     *
+     * @return Quantidade de pares (pessoa, nome).
+     */
+    public int getNames() {
+        return names.size();
+    }
+
+    /**
+     * Obter a quantidade de pares comparados na última reconciliação.
+     *
+     * @return Quantidade de pares.
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Escreve o relatório dos pares, um por linha, separados por tabulação: posição, semelhança, pontuação,
+     * recurso e nome de cada pessoa.
+     *
+     * @param matches Pares encontrados por {@link #reconcile(double)}.
+     * @param out Destino do relatório.
+     * @throws IOException Falha na escrita.
+     */
+    public static void writeReport(List<Match> matches, Writer out) throws IOException {
+        out.write("#\tsemelhança\tpontuação\tpessoa\tnome\tpessoa\tnome\n");
+        int rank = 0;
+        for (Match m : matches) {
+            out.write(String.format(Locale.ROOT, "%d\t%.3f\t%d\t%s\t%s\t%s\t%s%n", ++rank, m.similarity, m.score,
+                    m.first.uri, m.first.text, m.second.uri, m.second.text));
+        }
+    }
+
+    /**
+     * Sugere owl:sameAs para os pares com semelhança mínima.
+     *
+     * @param matches Pares encontrados por {@link #reconcile(double)}.
+     * @param threshold Semelhança mínima das sugestões.
+     * @return Modelo com as triplas owl:sameAs sugeridas.
+     */
+    public static Model sameAs(List<Match> matches, double threshold) {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("owl", Namespaces.NS_OWL);
+        model.setNsPrefix("ris", Namespaces.NS_RISADINHA);
+        for (Match m : matches) {
+            if (m.similarity >= threshold) {
+                model.add(model.createResource(m.first.uri), OWL.sameAs, model.createResource(m.second.uri));
+            }
+        }
+        return model;
+    }
+
+    private Match score(Name a, Name b) {
+        Name shorter = a.folded.length() <= b.folded.length() ? a : b;
+        Name longer = shorter == a ? b : a;
+        // FuzzyScore procura os caracteres da consulta (segundo argumento) no termo (primeiro argumento)
+        int score = fuzz.fuzzyScore(longer.folded, shorter.folded);
+        int max = Math.max(1, 3 * shorter.folded.length() - 2);
+        return new Match(a, b, score, (double) score / max);
+    }
+
+    /**
+     * Par de pessoas com nomes semelhantes.
+     */
+    public static final class Match {
+
+        private final Name first;
+        private final Name second;
+        private final int score;
+        private final double similarity;
+
+        Match(Name first, Name second, int score, double similarity) {
+            this.first = first;
+            this.second = second;
+            this.score = score;
+            this.similarity = similarity;
+        }
+
+        /**
+         * Obter a semelhança entre os nomes.
+         *
+         * @return Valor entre 0 e 1.
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        /**
+         * Obter a pontuação de {@link FuzzyScore} do par.
+         *
+         * @return Pontuação.
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Obter o recurso da primeira pessoa.
+         *
+         * @return URI do recurso.
+         */
+        public String getFirst() {
+            return first.uri;
+        }
+
+        /**
+         * Obter o recurso da segunda pessoa.
+         *
+         * @return URI do recurso.
+         */
+        public String getSecond() {
+            return second.uri;
+        }
+    }
+
+    /**
+     * Nome de uma pessoa, sem acentos e em minúsculas, e suas chaves de bloqueio.
+     */
+    private static final class Name {
+
+        private final String uri;
+        private final String text;
+        private final String folded;
+        private final List<String> keys = new ArrayList<>(2);
+
+        Name(String uri, String text) {
+            this.uri = uri;
+            this.text = text;
+            folded = StringUtils.normalizeSpace(StringUtils.stripAccents(text).toLowerCase(Locale.ROOT));
+            List<String> tokens = new ArrayList<>();
+            for (String token : folded.split("[^\\p{Alnum}]+")) {
+                if (!token.isEmpty() && !PARTICLES.contains(token)) {
+                    tokens.add(token);
+                }
+            }
+            if (!tokens.isEmpty()) {
+                String first = tokens.get(0);
+                String last = tokens.get(tokens.size() - 1);
+                keys.add("i:" + first.charAt(0) + last.charAt(0));
+                keys.add("s:" + last);
+            }
+        }
+    }
+}
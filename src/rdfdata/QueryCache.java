@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package rdfdata;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.sparql.util.FmtUtils;
+
+/**
+ * Cache dos resultados de consultas ao repositório, indexado pelo texto normalizado da consulta e pelos valores dos
+ * parâmetros. Cada resultado guarda a geração do repositório em que foi calculado; a geração é incrementada a cada
+ * transação de escrita confirmada, o que invalida todos os resultados anteriores sem percorrê-los. Quando o limite
+ * de resultados é atingido, o menos usado recentemente é descartado.
+ *
+ * <p>
+ * A geração é lida antes do início da transação de leitura que calcula o resultado, de modo que um resultado
+ * calculado durante uma escrita nunca é associado à geração posterior a ela. Os resultados devem ser imutáveis, pois
+ * são compartilhados por todas as threads.</p>
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+class QueryCache {
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final Map<String, Entry> entries;
+    private int maxEntries;
+
+    /**
+     * Cria o cache.
+     *
+     * @param maxEntries Quantidade máxima de resultados; 0 desativa o cache.
+     */
+    QueryCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > QueryCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Altera a quantidade máxima de resultados, descartando todos os resultados guardados.
+     *
+     * @param maxEntries Quantidade máxima de resultados; 0 desativa o cache.
+     */
+    synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        entries.clear();
+    }
+
+    /**
+     * Registra uma transação de escrita confirmada, invalidando todos os resultados guardados.
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Obtém o resultado guardado para a consulta ou o calcula e guarda.
+     *
+     * @param query Texto da consulta.
+     * @param params Valores dos parâmetros da consulta, ordenados pelo nome; um parâmetro sem valor (null) apenas
+     * distingue a chave, como a variável cujos valores são devolvidos.
+     * @param loader Cálculo do resultado, que deve abrir sua própria transação de leitura.
+     * @param <T> Tipo do resultado.
+     * @return O resultado.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String query, SortedMap<String, RDFNode> params, Supplier<T> loader) {
+        long current = generation.get();
+        String key = key(query, params);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.generation == current) {
+                    hits.incrementAndGet();
+                    return (T) entry.value;
+                }
+                entries.remove(key);
+                stale.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        T value = loader.get();
+        synchronized (this) {
+            if (maxEntries > 0 && current == generation.get()) {
+                entries.put(key, new Entry(current, value));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Resume os contadores de uso do cache.
+     *
+     * @return Texto com acertos, faltas, resultados invalidados e descartados.
+     */
+    String getStatistics() {
+        long h = hits.get();
+        long n = h + misses.get();
+        return String.format("Cache de consultas: %d acertos em %d consultas (%.1f%%), %d invalidados por escritas,"
+                + " %d descartados, %d guardados, geração %d", h, n, n == 0 ? 0.0 : 100.0 * h / n, stale.get(),
+                evictions.get(), size(), generation.get());
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Chave da consulta: o texto com espaços consecutivos reduzidos a um só, exceto dentro de literais, seguido dos
+     * parâmetros.
+     */
+    static String key(String query, SortedMap<String, RDFNode> params) {
+        StringBuilder key = new StringBuilder(query.length() + 32);
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < query.length(); ++i) {
+            char c = query.charAt(i);
+            if (quote != 0) {
+                key.append(c);
+                if (c == '\\' && i + 1 < query.length()) {
+                    key.append(query.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = key.length() > 0;
+            } else {
+                if (space) {
+                    key.append(' ');
+                    space = false;
+                }
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                }
+                key.append(c);
+            }
+        }
+        for (Map.Entry<String, RDFNode> param : params.entrySet()) {
+            key.append('\u0000').append(param.getKey());
+            if (param.getValue() != null) {
+                key.append('=').append(FmtUtils.stringForNode(param.getValue().asNode()));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Resultado guardado, com a geração em que foi calculado.
+     */
+    private static final class Entry {
+
+        private final long generation;
+        private final Object value;
+
+        Entry(long generation, Object value) {
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+}
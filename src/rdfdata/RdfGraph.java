@@ -24,17 +24,18 @@
 package rdfdata;
 
 import bloggerdata.Blog;
+import bloggerdata.TextNormalizer;
 import java.util.Collection;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.text.similarity.FuzzyScore;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.NodeIterator;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.util.URIref;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.RDF;
@@ -45,7 +46,8 @@ import risadinha.Referencia;
 import risadinha.RisadinhaPost;
 
 /**
- * Classe que representa um grafo RDF de publicações do blog.
+ * Classe que representa um grafo RDF de publicações do blog. As triplas são produzidas em fragmentos
+ * independentes, de modo que cada chamada devolve apenas as triplas novas, e não o grafo acumulado.
  *
  * @author karii
  * @author ricarte at ft.unicamp.br
@@ -54,14 +56,19 @@ public class RdfGraph {
 
     static Logger log = LogManager.getRootLogger();
 
-    private final Model model;
     private Resource resourceBlog;
+    private PersonIndex persons;
+    private final Map<String, Person> resolved = new ConcurrentHashMap<>();
+    private final AtomicLong personLookups = new AtomicLong();
 
     /**
-     * Inicializa namespaces e modelo default para o repositório.
+     * Cria um fragmento vazio, com os namespaces utilizados no repositório, para acumular as triplas de uma ou mais
+     * publicações.
+     *
+     * @return Modelo vazio.
      */
-    public RdfGraph() {
-        model = ModelFactory.createDefaultModel();
+    public Model createFragment() {
+        Model model = ModelFactory.createDefaultModel();
         model.setNsPrefix("dct", DCTerms.NS);
         model.setNsPrefix("foaf", Namespaces.NS_FOAF);
         model.setNsPrefix("sioc", Namespaces.NS_SIOC);
@@ -70,27 +77,29 @@ public class RdfGraph {
         model.setNsPrefix("owl", Namespaces.NS_OWL);
         model.setNsPrefix("ris", Namespaces.NS_RISADINHA);
         model.setNsPrefix("dbp", Namespaces.NS_DBPEDIA);
+        return model;
     }
 
     /**
      * Inicializa dados do blog no grafo.
      *
      * @param blog Referência para o blog.
-     * @return Modelo RDF criado.
+     * @return Modelo RDF com as triplas do blog.
      */
     public Model addBlog(Blog blog) {
+        Model model = createFragment();
         try {
             resourceBlog = model.createResource(blog.getUrl());
-            addStatement(resourceBlog, RDF.type, model.createResource(Namespaces.NS_SIOC + "Forum"));
-            addStatement(resourceBlog, DCTerms.identifier, model.createTypedLiteral(blog.getId()));
-            addLiteral(resourceBlog, DCTerms.title, blog.getName());
-            addLiteral(resourceBlog, DCTerms.description,
+            addStatement(model, resourceBlog, RDF.type, model.createResource(Namespaces.NS_SIOC + "Forum"));
+            addStatement(model, resourceBlog, DCTerms.identifier, model.createTypedLiteral(blog.getId()));
+            addLiteral(model, resourceBlog, DCTerms.title, blog.getName());
+            addLiteral(model, resourceBlog, DCTerms.description,
                     "Dados abertos derivados do blog Fale com o Dr. Risadinha");
-            addLiteral(resourceBlog, DCTerms.modified, blog.getLastUpdated().toString());
-            addLiteral(resourceBlog, DCTerms.issued, blog.getPublished().toString());
-            addLiteral(resourceBlog, DCTerms.language, "pt-BR");
-            addLiteral(resourceBlog, DCTerms.source, blog.getSelfLink());
-            addLiteral(resourceBlog, DCTerms.license, "http://creativecommons.org/licenses/by/4.0/");
+            addLiteral(model, resourceBlog, DCTerms.modified, blog.getLastUpdated().toString());
+            addLiteral(model, resourceBlog, DCTerms.issued, blog.getPublished().toString());
+            addLiteral(model, resourceBlog, DCTerms.language, "pt-BR");
+            addLiteral(model, resourceBlog, DCTerms.source, blog.getSelfLink());
+            addLiteral(model, resourceBlog, DCTerms.license, "http://creativecommons.org/licenses/by/4.0/");
         } catch (Exception ex) {
             log.warn("Add blog " + blog.getName(), ex);
         }
@@ -102,24 +111,37 @@ public class RdfGraph {
      *
      * @param post A publicação do blog Dr Risadinha a ser adicionada.
      * @param personsRdf Subgrafo com dados dos colaboradores do Projeto Dr Risadinha.
-     * @return Modelo com a publicação adicionada.
+     * @return Modelo apenas com as triplas desta publicação.
      */
     public Model addPost(RisadinhaPost post, Model personsRdf) {
+        return addPost(post, personsRdf, createFragment());
+    }
+
+    /**
+     * Adiciona uma publicação a um fragmento, permitindo agrupar as triplas de várias publicações antes de
+     * gravá-las no repositório.
+     *
+     * @param post A publicação do blog Dr Risadinha a ser adicionada.
+     * @param personsRdf Subgrafo com dados dos colaboradores do Projeto Dr Risadinha.
+     * @param model Fragmento que recebe as triplas (ver {@link #createFragment()}).
+     * @return O próprio fragmento, acrescido das triplas da publicação.
+     */
+    public Model addPost(RisadinhaPost post, Model personsRdf, Model model) {
         Resource resourcePost;
 
-        resourcePost = model.createResource(Namespaces.NS_RISADINHA + post.getId());
-        addStatement(resourcePost, RDF.type, model.createResource(Namespaces.NS_SIOC + "Post"));
+        resourcePost = model.createResource(getPostResource(post.getId()).getURI());
+        addStatement(model, resourcePost, RDF.type, model.createResource(Namespaces.NS_SIOC + "Post"));
         try {
-            addStatement(resourcePost, DCTerms.isPartOf, resourceBlog);
-            addStatement(resourcePost, DCTerms.identifier, model.createTypedLiteral(post.getId()));
-            addLiteral(resourcePost, DCTerms.title, post.getTitle());
-            addLiteral(resourcePost, DCTerms.issued, post.getPublishedDate().toString());
-            addLiteral(resourcePost, DCTerms.modified, post.getUpdatedDate().toString());
-            addLiteral(resourcePost, DCTerms.abstract_, post.getMensagemCurta());
-            addLiteral(resourcePost, model.createProperty(Namespaces.NS_SIOC, "content"), post.getMensagem());
-            addLiteral(resourcePost, DCTerms.source, post.getUrl());
-            addLiteral(resourcePost, model.createProperty(Namespaces.NS_FOAF, "depiction"), post.getImageUrl());
-            addLiteral(resourcePost, DCTerms.language, "pt-BR");
+            addStatement(model, resourcePost, DCTerms.isPartOf, resourceBlog);
+            addStatement(model, resourcePost, DCTerms.identifier, model.createTypedLiteral(post.getId()));
+            addLiteral(model, resourcePost, DCTerms.title, post.getTitle());
+            addLiteral(model, resourcePost, DCTerms.issued, post.getPublishedDate().toString());
+            addLiteral(model, resourcePost, DCTerms.modified, post.getUpdatedDate().toString());
+            addLiteral(model, resourcePost, DCTerms.abstract_, post.getMensagemCurta());
+            addLiteral(model, resourcePost, model.createProperty(Namespaces.NS_SIOC, "content"), post.getMensagem());
+            addLiteral(model, resourcePost, DCTerms.source, post.getUrl());
+            addLiteral(model, resourcePost, model.createProperty(Namespaces.NS_FOAF, "depiction"), post.getImageUrl());
+            addLiteral(model, resourcePost, DCTerms.language, "pt-BR");
 
             // autores
             Collection<String> autores = post.getAutor();
@@ -127,7 +149,7 @@ public class RdfGraph {
                 log.warn("Sem autor identificado: " + post.getTitle());
             } else {
                 for (String autor : autores) {
-                    addPerson(resourcePost, DCTerms.creator, autor, personsRdf);
+                    addPerson(model, resourcePost, DCTerms.creator, autor, personsRdf);
                 }
             }
             // revisores
@@ -136,13 +158,11 @@ public class RdfGraph {
                 log.warn("Sem revisor identificado: " + post.getTitle());
             } else {
                 for (String revisor : revisores) {
-                    addPerson(resourcePost, DCTerms.contributor, revisor, personsRdf);
+                    addPerson(model, resourcePost, DCTerms.contributor, revisor, personsRdf);
                 }
             }
 
-            Collection<String> referencias = post.getReferencia();
-            for (String reference : referencias) {
-                Referencia ref = new Referencia(reference);
+            for (Referencia ref : post.getReferencias()) {
                 Resource refRes = model.createResource();
                 model.add(model.createStatement(refRes, DCTerms.creator, ref.getSource()));
                 model.add(model.createStatement(refRes, DCTerms.description, ref.getDescription()));
@@ -158,7 +178,7 @@ public class RdfGraph {
                 model.add(model.createStatement(resourcePost, DCTerms.references, refRes));
             }
 
-            addSubject(resourcePost, post.getLabels());
+            addSubject(model, resourcePost, post.getLabels());
         } catch (Exception ex) {
             log.warn(post.getTitle(), ex);
         }
@@ -166,63 +186,79 @@ public class RdfGraph {
         return model;
     }
 
-    private void addStatement(Resource resource, Property property, RDFNode value) {
+    /**
+     * Obtém o recurso que representa uma publicação no grafo.
+     *
+     * @param id Identificador da publicação no Blogger.
+     * @return Recurso da publicação.
+     */
+    public Resource getPostResource(long id) {
+        return ResourceFactory.createResource(Namespaces.NS_RISADINHA + id);
+    }
+
+    private void addStatement(Model model, Resource resource, Property property, RDFNode value) {
         model.add(
                 model.createStatement(resource, property, value));
     }
 
-    private void addLiteral(Resource resource, Property property, String value) {
+    private void addLiteral(Model model, Resource resource, Property property, String value) {
         model.add(model.createStatement(resource, property, model.createLiteral(value)));
     }
 
-    private void addPerson(Resource resource, Property role, String person, Model personsRdf) {
-        final int threshold = 15;
-        FuzzyScore fuzz = new FuzzyScore(Locale.getDefault());
-        Property name = personsRdf.getProperty(Namespaces.NS_FOAF, "name");
-
-        ResIterator it = personsRdf.listSubjectsWithProperty(name, person);
-        Resource authorId;
-        if (it.hasNext()) {
-            authorId = it.nextResource();
-            model.add(model.createStatement(resource, role, authorId));
-            log.info(person + " associado a " + authorId.getLocalName());
+    /**
+     * Resume o uso da memória de nomes de autores e revisores já resolvidos nesta conversão.
+     *
+     * @return Texto com consultas, nomes distintos, taxa de acerto e novos colaboradores.
+     */
+    public String getPersonStatistics() {
+        long lookups = personLookups.get();
+        int distinct = resolved.size();
+        long minted = resolved.values().stream().filter(p -> p.minted).count();
+        return String.format("Pessoas: %d nomes resolvidos, %d grafias distintas (%.1f%% de acertos), %d novos"
+                + " colaboradores", lookups, distinct, lookups == 0 ? 0.0 : 100.0 * (lookups - distinct) / lookups,
+                minted);
+    }
+
+    /**
+     * Índice dos colaboradores, construído na primeira publicação e refeito apenas se o subgrafo mudar, o que
+     * também descarta os nomes já resolvidos.
+     */
+    private synchronized PersonIndex getPersonIndex(Model personsRdf) {
+        if (persons == null || persons.getModel() != personsRdf) {
+            persons = new PersonIndex(personsRdf);
+            resolved.clear();
+        }
+        return persons;
+    }
+
+    private void addPerson(Model model, Resource resource, Property role, String person, Model personsRdf) {
+        PersonIndex index = getPersonIndex(personsRdf);
+        personLookups.incrementAndGet();
+        Person resolution = resolved.computeIfAbsent(person, p -> {
+            Resource authorId = index.resolve(p);
+            return authorId != null ? new Person(authorId, false)
+                    : new Person(ResourceFactory.createResource(Namespaces.NS_RISADINHA
+                            + URIref.encode(StringUtils.stripAccents(p))), true);
+        });
+        if (!resolution.minted) {
+            model.add(model.createStatement(resource, role, resolution.resource));
+            log.info(person + " associado a " + resolution.resource.getLocalName());
         } else {
-            int score = 0;
-            int newscore;
-            NodeIterator nit = personsRdf.listObjectsOfProperty(name);
-            RDFNode best = null;
-            while (nit.hasNext()) {
-                RDFNode node = nit.nextNode();
-                newscore = fuzz.fuzzyScore(person, node.toString());
-                if (newscore > score) {
-                    score = newscore;
-                    best = node;
-                }
-            }
-            if (score >= threshold) {
-                ResIterator it2 = personsRdf.listSubjectsWithProperty(name, best);
-                authorId = it2.nextResource();
-                model.add(model.createStatement(resource, role, authorId));
-                log.info(person + " associado a " + authorId.getLocalName());
-            } else {
-                Resource newPerson = model.createResource(Namespaces.NS_RISADINHA
-                        + URIref.encode(StringUtils.stripAccents(person)));
-                model.add(model.createStatement(newPerson, RDF.type, model.createResource(Namespaces.NS_FOAF + "Person")));
-                model.add(model.createStatement(newPerson, name, person));
-                model.add(model.createStatement(resource, role, newPerson));
-                log.info(person + " associado a novo recurso " + newPerson.getLocalName());
-            }
+            // cada fragmento leva a descrição do novo colaborador, como na primeira ocorrência
+            Property name = personsRdf.getProperty(Namespaces.NS_FOAF, "name");
+            Resource newPerson = model.createResource(resolution.resource.getURI());
+            model.add(model.createStatement(newPerson, RDF.type, model.createResource(Namespaces.NS_FOAF + "Person")));
+            model.add(model.createStatement(newPerson, name, person));
+            model.add(model.createStatement(resource, role, newPerson));
+            log.info(person + " associado a novo recurso " + newPerson.getLocalName());
         }
     }
 
-    private void addSubject(Resource resourcePost, String[] labels) {
+    private void addSubject(Model model, Resource resourcePost, String[] labels) {
         Resource resourceLabel;
         if (labels != null) {
             for (String label : labels) {
-                String subject = label.toLowerCase().replaceAll("\u200b", "");
-                subject = StringUtils.deleteWhitespace(subject);
-                subject = StringUtils.stripAccents(subject);
-                subject = StringUtils.remove(subject, ".-");
+                String subject = TextNormalizer.toSubjectKey(label);
                 resourceLabel = model.createResource(Namespaces.NS_RISADINHA
                         + subject);
                 model.add(model.createStatement(resourcePost, DCTerms.subject, resourceLabel));
@@ -231,4 +267,18 @@ public class RdfGraph {
             }
         }
     }
+
+    /**
+     * Resultado da resolução de um nome: um colaborador conhecido ou um novo recurso criado para o nome.
+     */
+    private static final class Person {
+
+        private final Resource resource;
+        private final boolean minted;
+
+        Person(Resource resource, boolean minted) {
+            this.resource = resource;
+            this.minted = minted;
+        }
+    }
 }
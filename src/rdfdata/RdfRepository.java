@@ -25,27 +25,64 @@ package rdfdata;
 
 import bloggerdata.Blog;
 import bloggerdata.Post;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.ReadWrite;
-import org.apache.jena.query.ResultSet;
 import org.apache.jena.query.ResultSetFormatter;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.graph.GraphReadOnly;
 import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import org.apache.jena.tdb2.loader.base.MonitorOutput;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import risadinha.ParseCache;
+import risadinha.ResumoHtmlContentParser;
 import risadinha.RisadinhaPost;
+import risadinha.SectionMarkers;
 
 /**
  * Repositório local para o armazenamento de dados em RDF.
@@ -55,59 +92,315 @@ import risadinha.RisadinhaPost;
  */
 public class RdfRepository {
 
+    /**
+     * Quantidade padrão de publicações gravadas em cada transação de escrita.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    /**
+     * Quantidade padrão de resultados de consultas guardados (ver {@link #setQueryCacheSize(int)}).
+     */
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 256;
+
+    /**
+     * Quantidade de publicações em conversão, por thread, no modo paralelo de {@link #create(Blog)}.
+     */
+    private static final int POSTS_PER_THREAD = 4;
+
+    /**
+     * Mecanismo de armazenamento do repositório.
+     */
+    public enum Backend {
+        /**
+         * Jena TDB1, o formato original do repositório.
+         */
+        TDB,
+        /**
+         * Jena TDB2, com transações sem limite de tamanho e carga em lote paralela. O diretório não é compatível
+         * com TDB1: para migrar, exporte para Turtle ({@link #exportTtl(String)}) e carregue em um diretório novo.
+         * Inteiros são guardados pelo valor, de modo que um identificador xsd:long pode ser lido como xsd:integer.
+         */
+        TDB2
+    }
+
+    /**
+     * Algoritmo de carga em lote de {@link #bulkLoad(List, BulkLoader)}, disponível apenas em repositórios TDB2.
+     */
+    public enum BulkLoader {
+        /**
+         * Uma thread, atualizando todos os índices a cada tripla.
+         */
+        BASIC,
+        /**
+         * Uma thread, construindo um índice de cada vez.
+         */
+        SEQUENTIAL,
+        /**
+         * Análise e índices em threads separadas, em fases.
+         */
+        PHASED,
+        /**
+         * Análise e todos os índices em paralelo; o mais rápido, com maior uso de memória e processadores.
+         */
+        PARALLEL
+    }
+
     private final Dataset dataset;
+    private final Backend backend;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int parallelism = 1;
+    private SectionMarkers markers = SectionMarkers.DEFAULT;
+    private ResumoHtmlContentParser.Mode htmlParser = ResumoHtmlContentParser.Mode.DOM;
+    private ParseCache parseCache;
+    private final QueryCache queryCache = new QueryCache(DEFAULT_QUERY_CACHE_SIZE);
+    private long triplesWritten = 0;
+    private int commits = 0;
     static Logger log = LogManager.getRootLogger();
 
+    private static final String PERSONS_FILE = "colaboradores.ttl";
+    private static final String META_GRAPH = Namespaces.NS_RISADINHA + "meta";
+    private static final Resource PERSONS_SOURCE = ResourceFactory.createResource(Namespaces.NS_RISADINHA
+            + PERSONS_FILE);
+    private static final Property CHECKSUM = ResourceFactory.createProperty(Namespaces.NS_RISADINHA, "checksum");
+    private static Model persons;
+    private static String personsChecksum;
+
     /**
-     * Cria um repositório RDF no diretório especificado, incorporando no 
-     * modelo default os dados pré-estabelecidos do Projeto Dr Risadinha.
+     * Abre o repositório RDF no diretório especificado, sem alterá-lo. Os dados pré-estabelecidos do Projeto Dr
+     * Risadinha são gravados pelas operações de escrita (ver {@link #syncPersons()}).
      * 
      * @param dir Diretório de localização do repositório.
      */
     public RdfRepository(String dir) {
-        dataset = TDBFactory.createDataset(dir);
-        Model personsRdf = ModelFactory.createDefaultModel();
-        personsRdf.read("colaboradores.ttl");
-        add(personsRdf);
+        this(dir, Backend.TDB);
     }
 
     /**
-     * Adiciona um modelo com triplas RDF ao modelo default do repositório.
+     * Abre o repositório RDF no diretório especificado com o mecanismo de armazenamento indicado.
+     *
+     * @param dir Diretório de localização do repositório.
+     * @param backend Mecanismo de armazenamento; deve ser o mesmo com que o diretório foi criado.
+     */
+    public RdfRepository(String dir, Backend backend) {
+        this.backend = backend;
+        dataset = backend == Backend.TDB2 ? TDB2Factory.connectDataset(dir) : TDBFactory.createDataset(dir);
+    }
+
+    /**
+     * Obtém o mecanismo de armazenamento do repositório.
+     * @return O mecanismo de armazenamento.
+     */
+    public Backend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Define quantas publicações são agrupadas em cada transação de escrita durante a criação do repositório.
+     * @param batchSize Quantidade de publicações por transação (no mínimo 1).
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Obtém a quantidade de publicações agrupadas em cada transação de escrita.
+     * @return Quantidade de publicações por transação.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Define quantas threads convertem publicações em {@link #create(Blog)}. Com mais de uma thread, cada publicação
+     * é analisada e convertida em um fragmento próprio por um conjunto fixo de threads, e os fragmentos são gravados
+     * na ordem das publicações pela thread que chamou create, de modo que o resultado é o mesmo da conversão
+     * sequencial.
+     * @param parallelism Quantidade de threads de conversão; 1 (padrão) para conversão sequencial.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Define os marcadores que delimitam as seções das publicações convertidas por {@link #create(Blog)} e
+     * {@link #update(Blog)}.
+     * @param markers Vocabulário de marcadores das seções.
+     */
+    public void setSectionMarkers(SectionMarkers markers) {
+        this.markers = markers;
+    }
+
+    /**
+     * Define a forma de análise do HTML das publicações convertidas por {@link #create(Blog)} e
+     * {@link #update(Blog)}.
+     * @param mode Forma de análise; {@link ResumoHtmlContentParser.Mode#DOM} por padrão.
+     */
+    public void setHtmlParserMode(ResumoHtmlContentParser.Mode mode) {
+        this.htmlParser = mode;
+    }
+
+    /**
+     * Obtém as seções das publicações convertidas por {@link #create(Blog)} e {@link #update(Blog)} do cache de
+     * análise, que substitui os marcadores e a forma de análise definidos.
+     * @param parseCache Cache de análise, ou null para analisar todas as publicações.
+     */
+    public void setParseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Define quantos resultados de consultas ({@link #blogExists(String)}, {@link #getPerson()},
+     * {@link #getLastModifiedDate(String)}) são guardados entre chamadas. Os resultados são invalidados a cada
+     * transação de escrita confirmada por esta instância; escritas feitas por outros processos no mesmo diretório
+     * não são percebidas.
+     * @param size Quantidade máxima de resultados; 0 desativa o cache.
+     */
+    public void setQueryCacheSize(int size) {
+        queryCache.setMaxEntries(size);
+    }
+
+    /**
+     * Resume o uso do cache de consultas.
+     * @return Texto com acertos, faltas e resultados invalidados.
+     */
+    public String getQueryCacheStatistics() {
+        return queryCache.getStatistics();
+    }
+
+    private RisadinhaPost toRisadinhaPost(Post post) {
+        return (parseCache != null ? new RisadinhaPost(post, parseCache, true)
+                : new RisadinhaPost(post, markers, htmlParser, true)).parse();
+    }
+
+    /**
+     * Adiciona um modelo com triplas RDF ao modelo default do repositório, em uma única transação de escrita.
      * @param model O modelo a ser adicionado.
+     * @return Quantidade de triplas gravadas nesta transação.
      */
-    public void add(Model model) {
-        Model modelTdb = dataset.getDefaultModel();
-        beginWrite();
-        modelTdb.add(model);
-        commit();
+    public long add(Model model) {
+        long size = model.size();
+        executeWrite(session -> session.getModel().add(model));
+        triplesWritten += size;
+        ++commits;
+        log.info("Transação " + commits + ": " + size + " triplas gravadas");
+        return size;
+    }
+
+    /**
+     * Carrega triplas de arquivos diretamente no repositório, vazio ou não, sem passar por um modelo em memória;
+     * as quádruplas de formatos como N-Quads e TriG vão para os grafos nomeados. O formato de cada arquivo é
+     * deduzido da extensão (.ttl, .nt, .nq, .trig, ...), inclusive quando compactado com gzip (.ttl.gz). Em TDB2
+     * usa o carregador em lote indicado, que gerencia suas próprias transações; em TDB1 os arquivos são lidos em
+     * uma única transação de escrita, sem carregador em lote. Não deve ser chamado dentro de uma transação.
+     * @param files Nomes dos arquivos.
+     * @param loader Algoritmo de carga em TDB2; deve ser null em TDB1.
+     * @return Quantidade de triplas e quádruplas lidas dos arquivos, incluindo as que já estavam no repositório.
+     * @throws IllegalArgumentException Carregador indicado em TDB1, ou ausente em TDB2.
+     */
+    public long bulkLoad(List<String> files, BulkLoader loader) {
+        if (backend == Backend.TDB2 ? loader == null : loader != null) {
+            throw new IllegalArgumentException("Carregador " + loader + " em repositório " + backend
+                    + "; os carregadores em lote requerem TDB2");
+        }
+        if (backend == Backend.TDB2) {
+            MonitorOutput output = (fmt, args) -> log.info(String.format(fmt, args));
+            DatasetGraph dsg = dataset.asDatasetGraph();
+            DataLoader dataLoader;
+            switch (loader) {
+                case BASIC:
+                    dataLoader = LoaderFactory.basicLoader(dsg, output);
+                    break;
+                case SEQUENTIAL:
+                    dataLoader = LoaderFactory.sequentialLoader(dsg, output);
+                    break;
+                case PHASED:
+                    dataLoader = LoaderFactory.phasedLoader(dsg, output);
+                    break;
+                default:
+                    dataLoader = LoaderFactory.parallelLoader(dsg, output);
+            }
+            dataLoader.startBulk();
+            try {
+                dataLoader.load(files);
+                dataLoader.finishBulk();
+            } catch (RuntimeException ex) {
+                dataLoader.finishException(ex);
+                throw ex;
+            }
+            queryCache.invalidate();
+            long loaded = dataLoader.countTriples() + dataLoader.countQuads();
+            triplesWritten += loaded;
+            ++commits;
+            return loaded;
+        }
+        StreamRDFCounting dest = StreamRDFLib.count(StreamRDFLib.dataset(dataset.asDatasetGraph()));
+        try (RepositorySession session = write()) {
+            for (String file : files) {
+                RDFDataMgr.parse(dest, file);
+            }
+            session.commit();
+        }
+        triplesWritten += dest.count();
+        ++commits;
+        return dest.count();
+    }
+
+    /**
+     * Obtém o total de triplas gravadas por esta instância do repositório.
+     * @return Soma das triplas de todas as transações de escrita.
+     */
+    public long getTriplesWritten() {
+        return triplesWritten;
     }
 
     /**
-     * Inicia transação de leitura.
+     * Obtém a quantidade de transações de escrita concluídas por esta instância do repositório.
+     * @return Quantidade de transações.
      */
-    public void beginRead() {
-        dataset.begin(ReadWrite.READ);
+    public int getCommits() {
+        return commits;
     }
 
     /**
-     * Inicia transação de escrita.
+     * Abre uma sessão de leitura, a ser encerrada com try-with-resources. Várias threads podem ler ao mesmo tempo,
+     * inclusive durante uma escrita.
+     * @return A sessão.
      */
-    public void beginWrite() {
-        dataset.begin(ReadWrite.WRITE);
+    public RepositorySession read() {
+        return new RepositorySession(dataset, ReadWrite.READ);
     }
 
     /**
-     * Conclui uma transação.
+     * Abre uma sessão de escrita, a ser confirmada com {@link RepositorySession#commit()} e encerrada com
+     * try-with-resources. Escritas de threads diferentes são feitas uma de cada vez.
+     * @return A sessão.
      */
-    public void commit() {
-        dataset.commit();
+    public RepositorySession write() {
+        return new RepositorySession(dataset, ReadWrite.WRITE, queryCache::invalidate);
+    }
+
+    /**
+     * Executa uma operação em uma sessão de leitura.
+     * @param action A operação; o resultado não deve conter modelos ou iteradores da sessão.
+     * @param <T> Tipo do resultado.
+     * @return Resultado da operação.
+     */
+    public <T> T executeRead(Function<RepositorySession, T> action) {
+        try (RepositorySession session = read()) {
+            return action.apply(session);
+        }
     }
 
-    /** 
-     * Encerra operações no repositório.
+    /**
+     * Executa uma operação em uma sessão de escrita, confirmada ao final; se a operação falhar, as alterações são
+     * descartadas.
+     * @param action A operação.
      */
-    public void end() {
-        dataset.end();
+    public void executeWrite(Consumer<RepositorySession> action) {
+        try (RepositorySession session = write()) {
+            action.accept(session);
+            session.commit();
+        }
     }
 
     /**
@@ -115,76 +408,121 @@ public class RdfRepository {
      * @param qs1 A consulta SPARQL.
      */
     public void query(String qs1) {
-        try (QueryExecution qExec = QueryExecutionFactory.create(qs1, dataset)) {
-            ResultSet rs = qExec.execSelect();
-            ResultSetFormatter.out(rs);
+        try {
+            executeRead(session -> {
+                try (QueryExecution qExec = QueryExecutionFactory.create(qs1, dataset)) {
+                    ResultSetFormatter.out(qExec.execSelect());
+                }
+                return null;
+            });
         } catch (Exception ex) {
             log.warn(qs1, ex);
         }
     }
-    
+
     /**
-     * Obter modelo com triplas RDF do repositório.
-     * @return O modelo.
+     * Exporta triplas RDF para um arquivo em formato Turtle, gravado em blocos à medida que o repositório é lido.
+     * @param filename Nome do arquivo a ser criado; terminado em .gz, é compactado com gzip.
+     * @return Quantidade de triplas exportadas.
+     * @throws IOException Falha na criação ou gravação do arquivo.
      */
-    public Model getModel() {
-        beginRead();
-        Model model = dataset.getDefaultModel();
-        end();
-        return model; 
+    public long exportTtl(String filename) throws IOException {
+        Path file = Paths.get(filename);
+        return export(Collections.singletonMap(file, ExportFormat.TURTLE)).get(file);
     }
 
     /**
-     * Exporta triplas RDF para um arquivo em formato Turtle.
-     * @param filename Nome do arquivoa ser criado.
+     * Exporta o repositório para vários arquivos em uma única leitura, com uma thread de gravação por arquivo
+     * (ver {@link ExportFormat}).
+     * @param files Arquivos a criar, com seus formatos; nomes terminados em .gz são compactados com gzip.
+     * @return Quantidade de triplas ou quádruplas gravadas em cada arquivo.
+     * @throws IOException Falha na criação ou gravação de algum arquivo.
      */
-    public long exportTtl(String filename) {
-        OutputStream out;
-        try {
-            out = new FileOutputStream(filename);
-        } catch (FileNotFoundException ex) {
-            log.warn("Exporting to " + filename, ex);
-            out = System.out;
-        }
-        beginRead();
-        RDFDataMgr.write(out, dataset.getDefaultModel(), RDFFormat.TURTLE_PRETTY);
-        long size = dataset.getDefaultModel().size();
-        end();
-        return size;
+    public Map<Path, Long> export(Map<Path, ExportFormat> files) throws IOException {
+        return new DatasetExporter(dataset, files).export();
     }
     
-     /**
-     * Exporta triplas RDF para um arquivo em formato XML.
-     * @param filename Nome do arquivoa ser criado.
+    /**
+     * Grava uma cópia binária do repositório com dicionário de termos, com o grafo default e os grafos nomeados
+     * (ver {@link RdfSnapshot}).
+     * @param filename Nome do arquivo a ser criado; terminado em .gz, é compactado com gzip e não pode ser mapeado
+     * em memória na leitura.
+     * @return Quantidade de triplas e quádruplas gravadas.
+     * @throws IOException Falha na criação ou gravação do arquivo.
      */
-    public long exportXml(String filename) {
-        OutputStream out;
-        try {
-            out = new FileOutputStream(filename);
-        } catch (FileNotFoundException ex) {
-            log.warn("Exporting to " + filename, ex);
-            out = System.out;
-        }
-        beginRead();
-        RDFDataMgr.write(out, dataset.getDefaultModel(), RDFFormat.RDFXML);
-        long size = dataset.getDefaultModel().size();
-        end();
-        return size;
+    public long writeSnapshot(String filename) throws IOException {
+        try (RepositorySession session = read()) {
+            return RdfSnapshot.write(dataset.asDatasetGraph(), session.getModel().getNsPrefixMap(),
+                    Paths.get(filename));
+        }
+    }
+
+    /**
+     * Carrega uma cópia binária gravada por {@link #writeSnapshot(String)} no repositório, em uma única transação
+     * de escrita. Ferramentas somente de leitura podem consultar a cópia sem carregá-la, com
+     * {@link RdfSnapshot#openSession(java.nio.file.Path)}.
+     * @param filename Nome do arquivo da cópia.
+     * @return Quantidade de triplas e quádruplas lidas.
+     * @throws IOException Falha na leitura do arquivo.
+     */
+    public long loadSnapshot(String filename) throws IOException {
+        StreamRDFCounting dest = StreamRDFLib.count(StreamRDFLib.dataset(dataset.asDatasetGraph()));
+        try (RepositorySession session = write()) {
+            RdfSnapshot.read(Paths.get(filename), dest);
+            session.commit();
+        }
+        triplesWritten += dest.count();
+        ++commits;
+        return dest.count();
+    }
+
+    /**
+     * Exporta triplas RDF para um arquivo em formato XML. O RDF/XML é montado a partir do grafo completo; para
+     * repositórios grandes, prefira {@link #export(Map)}.
+     * @param filename Nome do arquivo a ser criado.
+     * @return Quantidade de triplas exportadas.
+     * @throws IOException Falha na criação ou gravação do arquivo.
+     */
+    public long exportXml(String filename) throws IOException {
+        try (RepositorySession session = read();
+                OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(filename)))) {
+            RDFDataMgr.write(out, session.getModel(), RDFFormat.RDFXML);
+            return session.getModel().size();
+        }
     }
 
+    /**
+     * Obtém os valores de uma variável nas soluções de uma consulta, do cache de consultas se possível.
+     * @return Lista imutável com a forma léxica dos literais e o texto dos demais nós.
+     */
     private List<String> queryList(String qs1, String str) {
-        List<String> resultados = new ArrayList<>();
-        beginRead();
-        try (QueryExecution qExec = QueryExecutionFactory.create(qs1, dataset)) {
-            ResultSet rs = qExec.execSelect();
-            while (rs.hasNext()) {
-                resultados.add(rs.next().get(str).toString());
+        return queryCache.get(qs1, new TreeMap<>(Collections.singletonMap("?" + str, null)), () -> {
+            try {
+                return Collections.unmodifiableList(executeRead(session -> session.select(qs1, solution -> {
+                    RDFNode node = solution.get(str);
+                    return node.isLiteral() ? node.asLiteral().getLexicalForm() : node.toString();
+                })));
+            } catch (Exception ex) {
+                log.warn(qs1 + " ; " + str, ex);
+                return Collections.<String>emptyList();
             }
-        } catch (Exception ex) {
-            log.warn(qs1 + " ; " + str, ex);
-        }
-        end();
-        return resultados;
+        });
+    }
+
+    /**
+     * Executa uma consulta com parâmetros, do cache de consultas se possível.
+     * @param query Consulta com variáveis a substituir pelos parâmetros.
+     * @param params Valores das variáveis, pelo nome sem '?'.
+     * @param action Execução da consulta já com os parâmetros; o resultado deve ser imutável.
+     */
+    private <T> T cachedQuery(String query, SortedMap<String, RDFNode> params,
+            BiFunction<RepositorySession, String, T> action) {
+        return queryCache.get(query, params, () -> {
+            ParameterizedSparqlString pss = new ParameterizedSparqlString(query);
+            params.forEach(pss::setParam);
+            String bound = pss.toString();
+            return executeRead(session -> action.apply(session, bound));
+        });
     }
 
     /**
@@ -193,33 +531,105 @@ public class RdfRepository {
      * @return True se o identificador do blog já existe no conjunto de dados RDF.
      */
     public boolean blogExists(String id) {
-        return queryList("SELECT ?identifier "
-                + "WHERE { "
+        return cachedQuery("ASK { "
                 + "  <http://drrisadinha.org/BlogDrRisadinha> <http://purl.org/dc/terms/identifier> ?identifier ."
-                + "}  ", "identifier").contains(id);
+                + "  FILTER (str(?identifier) = ?id) }",
+                new TreeMap<>(Collections.singletonMap("id", ResourceFactory.createPlainLiteral(id))),
+                RepositorySession::ask);
     }
 
     /**
-     * Adiciona ao repositório todos os dados do blog e de suas publicações.
+     * Adiciona ao repositório todos os dados do blog e de suas publicações. Cada transação de escrita recebe apenas
+     * as triplas de um lote de publicações (ver {@link #setBatchSize(int)}); a conversão das publicações pode ser
+     * feita em paralelo (ver {@link #setParallelism(int)}).
      * @param blog O objeto que contém toda a informação sobre o blog.
      */
     public void create(Blog blog) {
         int count = blog.getNumberOfPosts();
+        ExecutorService pool = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        int window = pool == null ? 1 : POSTS_PER_THREAD * parallelism;
         try {
+            syncPersons();
             RdfGraph graph = new RdfGraph();
             add(graph.addBlog(blog));
-            List<Post> postList = blog.getPosts();
-            Model personsRdf = getPersonsFromTtl();
-            for (Post original : postList) {
-                RisadinhaPost post = new RisadinhaPost(original);
-                add(graph.addPost(post, personsRdf));
-                log.info("#" + count-- + ": " + post.getTitle());
+            Iterator<Post> posts = blog.iteratePosts();
+            Model personsRdf = getPersons();
+            Deque<FutureTask<Fragment>> converting = new ArrayDeque<>();
+            Model batch = graph.createFragment();
+            int pending = 0;
+            while (true) {
+                while (converting.size() < window && posts.hasNext()) {
+                    Post next = posts.next();
+                    FutureTask<Fragment> task = new FutureTask<>(() -> {
+                        RisadinhaPost post = toRisadinhaPost(next);
+                        return new Fragment(post.getTitle(), graph.addPost(post, personsRdf));
+                    });
+                    if (pool == null) {
+                        task.run();
+                    } else {
+                        pool.execute(task);
+                    }
+                    converting.add(task);
+                }
+                if (converting.isEmpty()) {
+                    break;
+                }
+                Fragment fragment = await(converting.remove());
+                batch.add(fragment.model);
+                log.info("#" + count-- + ": " + fragment.title);
+                if (++pending == batchSize) {
+                    add(batch);
+                    batch = graph.createFragment();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                add(batch);
             }
-        } catch (IOException ex) {
+            log.info(graph.getPersonStatistics());
+        } catch (UncheckedIOException ex) {
             log.warn("While adding " + count, ex);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        log.info("Total de " + triplesWritten + " triplas gravadas em " + commits + " transações");
+    }
+
+    /**
+     * Aguarda a conversão de uma publicação, repassando a exceção que a interrompeu.
+     */
+    private static Fragment await(FutureTask<Fragment> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Conversão interrompida", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
         }
     }
 
+    /**
+     * Copia para a memória, em uma única transação de leitura, o tipo e os nomes de todas as pessoas do
+     * repositório.
+     * @return Modelo com as triplas rdf:type foaf:Person e foaf:name das pessoas.
+     */
+    Model getPersonNames() {
+        String query = "CONSTRUCT { ?p a <http://xmlns.com/foaf/0.1/Person> ; "
+                + "<http://xmlns.com/foaf/0.1/name> ?name } WHERE { "
+                + "  ?p a <http://xmlns.com/foaf/0.1/Person> ; <http://xmlns.com/foaf/0.1/name> ?name }";
+        return executeRead(session -> session.construct(query));
+    }
+
     /**
      * Obtém lista de pessoas no blog.
      * @return Lista de nomes de pessoas (autores ou revisores).
@@ -235,18 +645,163 @@ public class RdfRepository {
     /**
      * Obtém data de última atualização registrada no repositório.
      * @param uri URI do recurso associado ao blog no repositório.
-     * @return String com data de última modificação.
+     * @return String com data de última modificação, ou null se o recurso não tem essa informação.
      */
     public String getLastModifiedDate(String uri) {
-        beginRead();
-        String date = dataset.getDefaultModel().getResource(uri).getProperty(DCTerms.modified).getString();
-        end();
-        return date;
+        return cachedQuery("SELECT ?modified WHERE { ?uri <http://purl.org/dc/terms/modified> ?modified } LIMIT 1",
+                new TreeMap<>(Collections.singletonMap("uri", ResourceFactory.createResource(uri))),
+                (session, query) -> {
+                    List<String> dates = session.select(query,
+                            solution -> solution.getLiteral("modified").getLexicalForm());
+                    return dates.isEmpty() ? null : dates.get(0);
+                });
+    }
+
+    /**
+     * Sincroniza o repositório com as publicações alteradas desde a última modificação registrada para o blog.
+     * As triplas de cada publicação alterada são substituídas, em lotes de {@link #getBatchSize()} publicações, e
+     * a descrição do blog (inclusive dct:modified) é atualizada ao final.
+     * @param blog O blog já registrado no repositório.
+     * @return Quantidade de publicações atualizadas.
+     * @throws IllegalStateException O blog não tem data de modificação registrada no repositório.
+     */
+    public int update(Blog blog) {
+        String lastModified = getLastModifiedDate(blog.getUrl());
+        if (lastModified == null) {
+            throw new IllegalStateException("Blog " + blog.getUrl() + " não registrado no repositório");
+        }
+        LocalDateTime since = LocalDateTime.parse(lastModified);
+        log.info("Sincronizando publicações alteradas após " + since);
+        syncPersons();
+        RdfGraph graph = new RdfGraph();
+        Model blogFragment = graph.addBlog(blog);
+        Model personsRdf = getPersons();
+        Model batch = graph.createFragment();
+        List<Resource> replaced = new ArrayList<>();
+        int count = 0;
+        try {
+            Iterator<Post> posts = blog.iteratePostsUpdatedSince(since);
+            while (posts.hasNext()) {
+                RisadinhaPost post = toRisadinhaPost(posts.next());
+                graph.addPost(post, personsRdf, batch);
+                replaced.add(graph.getPostResource(post.getId()));
+                log.info("#" + ++count + ": " + post.getTitle() + " (" + post.getUpdatedDate() + ")");
+                if (replaced.size() == batchSize) {
+                    replace(replaced, batch);
+                    batch = graph.createFragment();
+                    replaced.clear();
+                }
+            }
+            if (!replaced.isEmpty()) {
+                replace(replaced, batch);
+            }
+            replace(Collections.singletonList(blogFragment.getResource(blog.getUrl())), blogFragment);
+        } catch (UncheckedIOException ex) {
+            log.warn("Sincronização interrompida após " + count + " publicações; dct:modified não foi alterado", ex);
+        }
+        log.info(count + " publicações atualizadas; " + triplesWritten + " triplas gravadas em " + commits
+                + " transações");
+        log.info(graph.getPersonStatistics());
+        return count;
+    }
+
+    /**
+     * Substitui, em uma única transação, as triplas dos recursos indicados (inclusive as referências
+     * bibliográficas, que são nós em branco) pelas triplas do modelo.
+     */
+    private void replace(List<Resource> resources, Model model) {
+        long size = model.size();
+        executeWrite(session -> {
+            Model modelTdb = session.getModel();
+            for (Resource resource : resources) {
+                List<Statement> old = session.listStatements(resource, null);
+                for (Statement statement : old) {
+                    if (statement.getPredicate().equals(DCTerms.references) && statement.getObject().isAnon()) {
+                        modelTdb.removeAll(statement.getResource(), null, null);
+                    }
+                }
+                modelTdb.remove(old);
+            }
+            modelTdb.add(model);
+        });
+        triplesWritten += size;
+        ++commits;
+        log.info("Transação " + commits + ": " + resources.size() + " recursos substituídos, " + size
+                + " triplas gravadas");
+    }
+
+    /**
+     * Obtém os dados dos colaboradores do Projeto Dr Risadinha, lidos de colaboradores.ttl uma única vez por
+     * processo e compartilhados, sem possibilidade de alteração, por todas as instâncias.
+     * @return Modelo com as pessoas descritas em colaboradores.ttl.
+     */
+    Model getPersons() {
+        return loadPersons();
+    }
+
+    /**
+     * Grava no modelo default os dados dos colaboradores do Projeto Dr Risadinha, se o resumo (SHA-256) de
+     * colaboradores.ttl difere do registrado no grafo ris:meta do repositório. Quando o arquivo não mudou, basta
+     * uma transação de leitura.
+     * @return Verdadeiro se os dados foram gravados.
+     */
+    public boolean syncPersons() {
+        Model personsRdf = loadPersons();
+        if (executeRead(session -> session.getNamedModel(META_GRAPH).contains(PERSONS_SOURCE, CHECKSUM,
+                personsChecksum))) {
+            return false;
+        }
+        executeWrite(session -> {
+            session.getModel().add(personsRdf);
+            Model meta = session.getNamedModel(META_GRAPH);
+            meta.removeAll(PERSONS_SOURCE, CHECKSUM, null);
+            meta.add(PERSONS_SOURCE, CHECKSUM, personsChecksum);
+        });
+        triplesWritten += personsRdf.size();
+        ++commits;
+        log.info("Transação " + commits + ": " + personsRdf.size() + " triplas de " + PERSONS_FILE + " gravadas");
+        return true;
+    }
+
+    private static synchronized Model loadPersons() {
+        if (persons == null) {
+            byte[] content;
+            try {
+                content = Files.readAllBytes(Paths.get(PERSONS_FILE));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            Model personsRdf = ModelFactory.createDefaultModel();
+            personsRdf.read(new ByteArrayInputStream(content), null, "TTL");
+            persons = ModelFactory.createModelForGraph(new GraphReadOnly(personsRdf.getGraph()));
+            personsChecksum = checksum(content);
+        }
+        return persons;
     }
 
-    private Model getPersonsFromTtl() {
-        Model personsRdf = ModelFactory.createDefaultModel();
-        personsRdf.read("colaboradores.ttl");
-        return personsRdf;
+    private static String checksum(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Triplas de uma publicação, convertidas por uma das threads de {@link #create(Blog)}.
+     */
+    private static final class Fragment {
+
+        private final String title;
+        private final Model model;
+
+        Fragment(String title, Model model) {
+            this.title = title;
+            this.model = model;
+        }
     }
 }
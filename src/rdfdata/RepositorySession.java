@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package rdfdata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+
+/**
+ * Transação de leitura ou de escrita sobre o repositório, obtida de {@link RdfRepository#read()} ou
+ * {@link RdfRepository#write()} e encerrada com try-with-resources. Os modelos e iteradores obtidos da sessão só
+ * valem enquanto ela está aberta; os métodos auxiliares devolvem resultados já copiados para a memória, que podem
+ * ser usados depois do encerramento.
+ *
+ * <p>
+ * A sessão pertence à thread que a abriu. Várias threads podem manter sessões de leitura ao mesmo tempo que uma
+ * sessão de escrita; cada leitura vê o estado do repositório no momento em que começou. Uma sessão de escrita não
+ * confirmada com {@link #commit()} é descartada ao ser encerrada. Uma sessão aberta por uma thread que já está em
+ * uma transação compatível participa dessa transação, e seu encerramento fica a cargo da sessão mais externa.</p>
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public final class RepositorySession implements AutoCloseable {
+
+    private final Dataset dataset;
+    private final ReadWrite mode;
+    private final boolean owner;
+    private final Runnable onCommit;
+    private boolean open = true;
+
+    /**
+     * Inicia a transação, ou participa da transação em curso na thread.
+     *
+     * @param dataset O repositório.
+     * @param mode Leitura ou escrita.
+     * @throws IllegalStateException Escrita solicitada dentro de uma transação de leitura.
+     */
+    RepositorySession(Dataset dataset, ReadWrite mode) {
+        this(dataset, mode, null);
+    }
+
+    /**
+     * Inicia a transação, ou participa da transação em curso na thread, com uma ação executada após a confirmação
+     * da escrita.
+     *
+     * @param dataset O repositório.
+     * @param mode Leitura ou escrita.
+     * @param onCommit Ação executada após a confirmação, ou null.
+     * @throws IllegalStateException Escrita solicitada dentro de uma transação de leitura.
+     */
+    RepositorySession(Dataset dataset, ReadWrite mode, Runnable onCommit) {
+        this.dataset = dataset;
+        this.mode = mode;
+        this.onCommit = onCommit;
+        if (dataset.isInTransaction()) {
+            if (mode == ReadWrite.WRITE && dataset.transactionMode() != ReadWrite.WRITE) {
+                throw new IllegalStateException("Sessão de escrita dentro de uma sessão de leitura");
+            }
+            owner = false;
+        } else {
+            dataset.begin(mode);
+            owner = true;
+        }
+    }
+
+    /**
+     * Indica se a sessão permite escrita.
+     *
+     * @return true para sessões de escrita.
+     */
+    public boolean isWrite() {
+        return mode == ReadWrite.WRITE;
+    }
+
+    /**
+     * Obtém o modelo default do repositório, válido enquanto a sessão está aberta.
+     *
+     * @return O modelo.
+     */
+    public Model getModel() {
+        check();
+        return dataset.getDefaultModel();
+    }
+
+    /**
+     * Obtém um grafo nomeado do repositório, válido enquanto a sessão está aberta.
+     *
+     * @param name IRI do grafo.
+     * @return O modelo do grafo.
+     */
+    public Model getNamedModel(String name) {
+        check();
+        return dataset.getNamedModel(name);
+    }
+
+    /**
+     * Lista os objetos de uma propriedade no modelo default.
+     *
+     * @param property A propriedade.
+     * @return Objetos distintos, copiados para a memória.
+     */
+    public List<RDFNode> listObjects(Property property) {
+        return getModel().listObjectsOfProperty(property).toList();
+    }
+
+    /**
+     * Lista as triplas de um recurso no modelo default.
+     *
+     * @param subject O recurso.
+     * @param property A propriedade, ou null para todas.
+     * @return Triplas copiadas para a memória.
+     */
+    public List<Statement> listStatements(Resource subject, Property property) {
+        return getModel().listStatements(subject, property, (RDFNode) null).toList();
+    }
+
+    /**
+     * Executa uma consulta SPARQL SELECT e converte cada solução ainda dentro da sessão.
+     *
+     * @param query A consulta.
+     * @param mapper Conversão de cada solução.
+     * @param <T> Tipo dos elementos convertidos.
+     * @return Soluções convertidas, na ordem da consulta.
+     */
+    public <T> List<T> select(String query, Function<QuerySolution, T> mapper) {
+        check();
+        List<T> result = new ArrayList<>();
+        try (QueryExecution qExec = QueryExecutionFactory.create(query, dataset)) {
+            ResultSet rs = qExec.execSelect();
+            while (rs.hasNext()) {
+                result.add(mapper.apply(rs.next()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Executa uma consulta SPARQL ASK.
+     *
+     * @param query A consulta.
+     * @return Resposta da consulta.
+     */
+    public boolean ask(String query) {
+        check();
+        try (QueryExecution qExec = QueryExecutionFactory.create(query, dataset)) {
+            return qExec.execAsk();
+        }
+    }
+
+    /**
+     * Executa uma consulta SPARQL CONSTRUCT.
+     *
+     * @param query A consulta.
+     * @return Modelo em memória com as triplas construídas.
+     */
+    public Model construct(String query) {
+        check();
+        try (QueryExecution qExec = QueryExecutionFactory.create(query, dataset)) {
+            return qExec.execConstruct(ModelFactory.createDefaultModel());
+        }
+    }
+
+    /**
+     * Confirma as alterações de uma sessão de escrita. Depois disso a sessão não pode mais ser usada, apenas
+     * encerrada.
+     *
+     * @throws IllegalStateException Sessão de leitura ou já encerrada.
+     */
+    public void commit() {
+        check();
+        if (mode != ReadWrite.WRITE) {
+            throw new IllegalStateException("Sessão de leitura não pode ser confirmada");
+        }
+        if (owner) {
+            dataset.commit();
+            if (onCommit != null) {
+                onCommit.run();
+            }
+        }
+        open = false;
+    }
+
+    /**
+     * Encerra a sessão; alterações não confirmadas são descartadas.
+     */
+    @Override
+    public void close() {
+        if (owner && dataset.isInTransaction()) {
+            if (open && mode == ReadWrite.WRITE) {
+                dataset.abort();
+            }
+            dataset.end();
+        }
+        open = false;
+    }
+
+    private void check() {
+        if (!open) {
+            throw new IllegalStateException("Sessão encerrada");
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package rdfdata;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NullIterator;
+import org.apache.jena.util.iterator.WrappedIterator;
+
+/**
+ * Grafo somente de leitura sobre a tabela de triplas de uma cópia do repositório ({@link RdfSnapshot}), consultada
+ * diretamente no arquivo mapeado em memória. A tabela está ordenada por sujeito; as ordens por predicado e por
+ * objeto são índices construídos na primeira consulta que precisa deles. Cada consulta localiza por busca binária
+ * as triplas com o primeiro termo conhecido e filtra as demais posições.
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+final class SnapshotGraph extends GraphBase {
+
+    private static final int ANY = -1;
+    private static final int ABSENT = -2;
+
+    private final Node[] terms;
+    private final Map<Node, Integer> ids;
+    private final IntBuffer table;
+    private final int size;
+    private final int[][] orders = new int[3][];
+
+    /**
+     * Cria o grafo sobre uma tabela de triplas.
+     *
+     * @param terms Dicionário de termos da cópia.
+     * @param ids Índice de cada termo no dicionário.
+     * @param table Triplas como índices no dicionário, três por tripla, ordenadas por sujeito.
+     */
+    SnapshotGraph(Node[] terms, Map<Node, Integer> ids, IntBuffer table) {
+        this.terms = terms;
+        this.ids = ids;
+        this.table = table;
+        size = table.limit() / 3;
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(Triple pattern) {
+        int[] key = {id(pattern.getSubject()), id(pattern.getPredicate()), id(pattern.getObject())};
+        if (key[0] == ABSENT || key[1] == ABSENT || key[2] == ABSENT) {
+            return NullIterator.instance();
+        }
+        int column = key[0] != ANY ? 0 : key[1] != ANY ? 1 : key[2] != ANY ? 2 : ANY;
+        if (column == ANY) {
+            return WrappedIterator.create(new Rows(null, 0, size, key));
+        }
+        int[] order = order(column);
+        int from = lowerBound(order, column, key[column]);
+        int to = lowerBound(order, column, key[column] + 1);
+        return WrappedIterator.create(new Rows(order, from, to, key));
+    }
+
+    @Override
+    protected int graphBaseSize() {
+        return size;
+    }
+
+    private int id(Node node) {
+        if (node == null || !node.isConcrete()) {
+            return ANY;
+        }
+        Integer id = ids.get(node);
+        return id == null ? ABSENT : id;
+    }
+
+    private int value(int row, int column) {
+        return table.get(3 * row + column);
+    }
+
+    /**
+     * Linhas da tabela ordenadas pela coluna; null para a ordem da própria tabela (sujeito).
+     */
+    private synchronized int[] order(int column) {
+        if (column == 0 || orders[column] != null) {
+            return orders[column];
+        }
+        long[] keys = new long[size];
+        for (int row = 0; row < size; ++row) {
+            keys[row] = (long) value(row, column) << 32 | row;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[size];
+        for (int i = 0; i < size; ++i) {
+            order[i] = (int) keys[i];
+        }
+        orders[column] = order;
+        return order;
+    }
+
+    /**
+     * Primeira posição, na ordem dada, cujo valor na coluna não é menor que o procurado.
+     */
+    private int lowerBound(int[] order, int column, int wanted) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (value(order == null ? mid : order[mid], column) < wanted) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Triplas de um intervalo de posições que correspondem ao padrão.
+     */
+    private final class Rows implements Iterator<Triple> {
+
+        private final int[] order;
+        private final int to;
+        private final int[] key;
+        private int position;
+        private Triple next;
+
+        Rows(int[] order, int from, int to, int[] key) {
+            this.order = order;
+            this.to = to;
+            this.key = key;
+            position = from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && position < to) {
+                int row = order == null ? position : order[position];
+                ++position;
+                int s = value(row, 0);
+                int p = value(row, 1);
+                int o = value(row, 2);
+                if ((key[0] == ANY || key[0] == s) && (key[1] == ANY || key[1] == p)
+                        && (key[2] == ANY || key[2] == o)) {
+                    next = new Triple(terms[s], terms[p], terms[o]);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Triple next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Triple triple = next;
+            next = null;
+            return triple;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package risadinha;
+
+import org.jsoup.nodes.Entities;
+
+/**
+ * Decodifica, em uma única cópia dos caracteres, o texto HTML produzido pela higienização do conteúdo: entidades
+ * nomeadas (todo o conjunto do HTML5) e numéricas são substituídas pelos caracteres correspondentes e cada
+ * &lt;br&gt; por uma quebra de linha. O espaço não separável (&amp;nbsp;) é retirado, como sempre foi feito nas
+ * seções das publicações. Entidades malformadas ou desconhecidas são mantidas como estão.
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public final class HtmlEntityDecoder {
+
+    private static final String BR = "<br>";
+    private static final char NBSP = '\u00a0';
+    private static final int MAX_ENTITY_LENGTH = 32;
+
+    private HtmlEntityDecoder() {
+    }
+
+    /**
+     * Decodifica um texto HTML completo.
+     *
+     * @param html Texto HTML.
+     * @return Texto decodificado.
+     */
+    public static String decode(String html) {
+        return decode(html, 0, html.length());
+    }
+
+    /**
+     * Decodifica um trecho de um texto HTML, sem criar a substring do trecho.
+     *
+     * @param html Texto HTML.
+     * @param start Início do trecho (inclusive).
+     * @param end Fim do trecho (exclusive).
+     * @return Texto decodificado do trecho.
+     */
+    public static String decode(String html, int start, int end) {
+        int i = start;
+        while (i < end && html.charAt(i) != '&' && html.charAt(i) != '<') {
+            ++i;
+        }
+        if (i == end) {
+            return html.substring(start, end);
+        }
+        // o texto decodificado nunca é mais longo que o original
+        char[] out = new char[end - start];
+        html.getChars(start, i, out, 0);
+        int length = i - start;
+        int[] codepoints = new int[2];
+        while (i < end) {
+            char c = html.charAt(i);
+            if (c == '<' && html.startsWith(BR, i) && i + BR.length() <= end) {
+                out[length++] = '\n';
+                i += BR.length();
+            } else if (c == '&') {
+                int semicolon = semicolon(html, i + 1, end);
+                int count = semicolon < 0 ? 0 : entity(html, i + 1, semicolon, codepoints);
+                if (count == 0) {
+                    out[length++] = c;
+                    ++i;
+                } else {
+                    for (int k = 0; k < count; ++k) {
+                        if (codepoints[k] != NBSP) {
+                            length += Character.toChars(codepoints[k], out, length);
+                        }
+                    }
+                    i = semicolon + 1;
+                }
+            } else {
+                out[length++] = c;
+                ++i;
+            }
+        }
+        return new String(out, 0, length);
+    }
+
+    /**
+     * Posição do ';' que encerra a entidade iniciada em from, ou -1.
+     */
+    private static int semicolon(String html, int from, int end) {
+        int limit = Math.min(end, from + MAX_ENTITY_LENGTH);
+        for (int i = from; i < limit; ++i) {
+            char c = html.charAt(i);
+            if (c == ';') {
+                return i > from ? i : -1;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '#') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodifica a entidade entre '&amp;' e ';' nos pontos de código indicados.
+     *
+     * @return Quantidade de pontos de código (0 se a entidade não é válida).
+     */
+    private static int entity(String html, int from, int to, int[] codepoints) {
+        if (html.charAt(from) != '#') {
+            return Entities.codepointsForName(html.substring(from, to), codepoints);
+        }
+        int radix = 10;
+        int digits = from + 1;
+        if (digits < to && (html.charAt(digits) == 'x' || html.charAt(digits) == 'X')) {
+            radix = 16;
+            ++digits;
+        }
+        if (digits == to) {
+            return 0;
+        }
+        int value = 0;
+        for (int i = digits; i < to; ++i) {
+            int digit = Character.digit(html.charAt(i), radix);
+            if (digit < 0) {
+                return 0;
+            }
+            value = value * radix + digit;
+            if (value > Character.MAX_CODE_POINT) {
+                return 0;
+            }
+        }
+        if (value == 0 || value >= Character.MIN_SURROGATE && value <= Character.MAX_SURROGATE) {
+            return 0;
+        }
+        codepoints[0] = value;
+        return 1;
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package risadinha;
+
+import org.jsoup.parser.Parser;
+
+/**
+ * Tokenizador de HTML por eventos: percorre o fragmento uma única vez e entrega ao {@link Handler} os trechos de
+ * texto e as marcações de início e fim, sem construir a árvore do documento. Segue as regras de tokenização do
+ * Jsoup para o conteúdo das publicações: comentários, declarações e instruções de processamento são descartados, o
+ * conteúdo de script e style não é texto, title e textarea têm texto com entidades, e xmp, iframe, noembed e
+ * noframes têm texto literal.
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+class HtmlEventTokenizer {
+
+    /**
+     * Receptor dos eventos do tokenizador. Cada método devolve false para interromper a análise.
+     */
+    interface Handler {
+
+        /**
+         * Trecho de texto entre marcações, com as entidades já decodificadas.
+         *
+         * @param text O texto.
+         * @return false para interromper a análise.
+         */
+        boolean text(String text);
+
+        /**
+         * Marcação de início.
+         *
+         * @param name Nome da marcação, em minúsculas.
+         * @param tokenizer O tokenizador, cujo método {@link HtmlEventTokenizer#attribute(String)} fornece os
+         * atributos da marcação durante esta chamada.
+         * @return false para interromper a análise.
+         */
+        boolean startTag(String name, HtmlEventTokenizer tokenizer);
+
+        /**
+         * Marcação de fim.
+         *
+         * @param name Nome da marcação, em minúsculas.
+         * @return false para interromper a análise.
+         */
+        boolean endTag(String name);
+    }
+
+    private final String html;
+    private final int length;
+    private int attributesStart;
+    private final StringBuilder pending = new StringBuilder();
+    private String value;
+
+    /**
+     * Prepara a análise de um fragmento de HTML.
+     *
+     * @param html Fragmento de HTML.
+     */
+    HtmlEventTokenizer(String html) {
+        this.html = html;
+        length = html.length();
+    }
+
+    /**
+     * Percorre o fragmento, do início ao fim ou até que o receptor interrompa a análise.
+     *
+     * @param handler Receptor dos eventos.
+     */
+    void run(Handler handler) {
+        int textStart = 0;
+        int i = 0;
+        while (i < length) {
+            int lt = html.indexOf('<', i);
+            if (lt < 0 || lt + 1 == length) {
+                break;
+            }
+            char c = html.charAt(lt + 1);
+            if (isLetter(c)) {
+                if (!text(handler, textStart, lt, true)) {
+                    return;
+                }
+                int nameEnd = tagName(lt + 1);
+                String name = name(lt + 1, nameEnd);
+                int end = attributes(nameEnd, null);
+                if (end < 0) {
+                    return;
+                }
+                attributesStart = nameEnd;
+                if (!handler.startTag(name, this)) {
+                    return;
+                }
+                i = textStart = content(handler, name, end);
+                if (i < 0) {
+                    return;
+                }
+            } else if (c == '/') {
+                if (lt + 2 == length) {
+                    break;
+                }
+                char d = html.charAt(lt + 2);
+                if (d == '>') {
+                    // "</>" é ignorado, sem separar o texto que o cerca
+                    pending(textStart, lt);
+                    i = textStart = lt + 3;
+                    continue;
+                }
+                if (!text(handler, textStart, lt, true)) {
+                    return;
+                }
+                if (isLetter(d)) {
+                    int nameEnd = tagName(lt + 2);
+                    int end = attributes(nameEnd, null);
+                    if (end < 0 || !handler.endTag(name(lt + 2, nameEnd))) {
+                        return;
+                    }
+                    i = textStart = end;
+                } else {
+                    i = textStart = skipTo(">", lt + 2);
+                }
+            } else if (c == '!' || c == '?') {
+                if (!text(handler, textStart, lt, true)) {
+                    return;
+                }
+                i = textStart = c == '!' && html.startsWith("!--", lt + 1) ? comment(lt + 4) : skipTo(">", lt + 1);
+            } else {
+                i = lt + 1;
+            }
+        }
+        text(handler, textStart, length, true);
+    }
+
+    /**
+     * Valor de um atributo da marcação de início corrente, com as entidades decodificadas.
+     *
+     * @param name Nome do atributo, em minúsculas.
+     * @return Valor do atributo, ou null se ausente.
+     */
+    String attribute(String name) {
+        value = null;
+        attributes(attributesStart, name);
+        return value;
+    }
+
+    /**
+     * Trata o conteúdo dos elementos que não contêm marcações.
+     *
+     * @return Posição seguinte ao conteúdo, ou -1 se a análise terminou.
+     */
+    private int content(Handler handler, String name, int from) {
+        int end;
+        switch (name) {
+            case "script":
+            case "style":
+                return closing(name, from);
+            case "title":
+            case "textarea":
+                end = closing(name, from);
+                return text(handler, from, end, true) ? end : -1;
+            case "xmp":
+            case "iframe":
+            case "noembed":
+            case "noframes":
+                end = closing(name, from);
+                return text(handler, from, end, false) ? end : -1;
+            case "plaintext":
+                text(handler, from, length, false);
+                return -1;
+            default:
+                return from;
+        }
+    }
+
+    /**
+     * Posição da marcação de fim do elemento, ou o fim do fragmento.
+     */
+    private int closing(String name, int from) {
+        for (int i = html.indexOf("</", from); i >= 0; i = html.indexOf("</", i + 2)) {
+            int end = i + 2 + name.length();
+            if (html.regionMatches(true, i + 2, name, 0, name.length())
+                    && (end == length || isTagNameEnd(html.charAt(end)))) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private boolean text(Handler handler, int start, int end, boolean entities) {
+        String text = decode(start, end, entities);
+        if (pending.length() > 0) {
+            text = pending.append(text).toString();
+            pending.setLength(0);
+        }
+        return text.isEmpty() || handler.text(text);
+    }
+
+    /**
+     * Guarda um trecho de texto que continua após uma marcação ignorada.
+     */
+    private void pending(int start, int end) {
+        pending.append(decode(start, end, true));
+    }
+
+    private String decode(int start, int end, boolean entities) {
+        if (start >= end) {
+            return "";
+        }
+        String text = html.substring(start, end);
+        return entities && text.indexOf('&') >= 0 ? Parser.unescapeEntities(text, false) : text;
+    }
+
+    private int tagName(int from) {
+        int i = from;
+        while (i < length && !isTagNameEnd(html.charAt(i)) && html.charAt(i) != '<') {
+            ++i;
+        }
+        return i;
+    }
+
+    private String name(int start, int end) {
+        String name = html.substring(start, end).toLowerCase();
+        return name.equals("image") ? "img" : name;
+    }
+
+    /**
+     * Percorre os atributos de uma marcação a partir de from. Se wanted não é null, guarda em value o valor do
+     * primeiro atributo com esse nome. Como no Jsoup, um '&lt;' no lugar de um novo atributo encerra a marcação.
+     *
+     * @return Posição seguinte à marcação, ou -1 se o fragmento termina antes.
+     */
+    private int attributes(int from, String wanted) {
+        int i = from;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '>') {
+                return i + 1;
+            }
+            if (c == '<') {
+                return i;
+            }
+            if (isSpace(c) || c == '/') {
+                ++i;
+                continue;
+            }
+            int nameStart = i++;
+            while (i < length && !isSpace(html.charAt(i)) && "/=>".indexOf(html.charAt(i)) < 0) {
+                ++i;
+            }
+            int nameEnd = i;
+            while (i < length && isSpace(html.charAt(i))) {
+                ++i;
+            }
+            if (i == length || html.charAt(i) != '=') {
+                found(wanted, nameStart, nameEnd, nameEnd, nameEnd);
+                if (i < length && html.charAt(i) == '<') {
+                    // após o nome de um atributo, '<' inicia outro atributo
+                    ++i;
+                }
+                continue;
+            }
+            ++i;
+            while (i < length && isSpace(html.charAt(i))) {
+                ++i;
+            }
+            if (i == length) {
+                return -1;
+            }
+            char quote = html.charAt(i);
+            int valueStart;
+            int valueEnd;
+            if (quote == '"' || quote == '\'') {
+                valueStart = i + 1;
+                valueEnd = html.indexOf(quote, valueStart);
+                if (valueEnd < 0) {
+                    return -1;
+                }
+                i = valueEnd + 1;
+            } else {
+                valueStart = i;
+                while (i < length && !isSpace(html.charAt(i)) && html.charAt(i) != '>') {
+                    ++i;
+                }
+                valueEnd = i;
+            }
+            found(wanted, nameStart, nameEnd, valueStart, valueEnd);
+        }
+        return -1;
+    }
+
+    private void found(String wanted, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        if (wanted != null && value == null && nameEnd - nameStart == wanted.length()
+                && html.regionMatches(true, nameStart, wanted, 0, wanted.length())) {
+            value = Parser.unescapeEntities(html.substring(valueStart, valueEnd), true);
+        }
+    }
+
+    /**
+     * Fim de um comentário iniciado em from (logo após "&lt;!--").
+     */
+    private int comment(int from) {
+        if (html.startsWith(">", from)) {
+            return from + 1;
+        }
+        if (html.startsWith("->", from)) {
+            return from + 2;
+        }
+        for (int i = html.indexOf("--", from); i >= 0; i = html.indexOf("--", i + 1)) {
+            if (html.startsWith(">", i + 2)) {
+                return i + 3;
+            }
+            if (html.startsWith("!>", i + 2)) {
+                return i + 4;
+            }
+        }
+        return length;
+    }
+
+    private int skipTo(String end, int from) {
+        int i = html.indexOf(end, from);
+        return i < 0 ? length : i + end.length();
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isTagNameEnd(char c) {
+        return isSpace(c) || c == '/' || c == '>';
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package risadinha;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Localiza, em uma única passagem sobre o texto, todas as ocorrências de um conjunto de marcadores (autômato de
+ * Aho-Corasick). O autômato é compilado uma vez e pode ser usado por várias threads ao mesmo tempo.
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public class MarkerScanner {
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final String[] markers;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final int[] lowClass = new int[256];
+    private final Map<Character, Integer> highClass = new HashMap<>();
+    private final int width;
+    private final int[] delta;
+    private final int[][] output;
+
+    /**
+     * Compila o autômato para os marcadores indicados; marcadores repetidos ou vazios são ignorados.
+     *
+     * @param markers Marcadores a serem localizados.
+     */
+    public MarkerScanner(Collection<String> markers) {
+        Map<String, Integer> unique = new LinkedHashMap<>();
+        for (String marker : markers) {
+            if (!marker.isEmpty()) {
+                unique.putIfAbsent(marker, unique.size());
+            }
+        }
+        this.markers = unique.keySet().toArray(new String[0]);
+        index.putAll(unique);
+
+        // classes de caracteres: 0 para os que não aparecem em nenhum marcador
+        int classes = 1;
+        for (String marker : this.markers) {
+            for (char c : marker.toCharArray()) {
+                if (classOf(c) == 0) {
+                    if (c < lowClass.length) {
+                        lowClass[c] = classes++;
+                    } else {
+                        highClass.put(c, classes++);
+                    }
+                }
+            }
+        }
+        width = classes;
+
+        // trie
+        List<int[]> next = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        next.add(new int[width]);
+        ends.add(new ArrayList<>());
+        for (int m = 0; m < this.markers.length; ++m) {
+            int state = 0;
+            for (char c : this.markers[m].toCharArray()) {
+                int cls = classOf(c);
+                if (next.get(state)[cls] == 0) {
+                    next.get(state)[cls] = next.size();
+                    next.add(new int[width]);
+                    ends.add(new ArrayList<>());
+                }
+                state = next.get(state)[cls];
+            }
+            ends.get(state).add(m);
+        }
+
+        // transições completas e saídas, em largura a partir da raiz
+        int states = next.size();
+        delta = new int[states * width];
+        output = new int[states][];
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        output[0] = NO_OUTPUT;
+        for (int cls = 0; cls < width; ++cls) {
+            int target = cls == 0 ? 0 : next.get(0)[cls];
+            delta[cls] = target;
+            if (target != 0) {
+                queue.add(target);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            List<Integer> found = new ArrayList<>(ends.get(state));
+            for (int m : output[fail[state]]) {
+                found.add(m);
+            }
+            output[state] = found.isEmpty() ? NO_OUTPUT : found.stream().mapToInt(Integer::intValue).toArray();
+            for (int cls = 0; cls < width; ++cls) {
+                int target = cls == 0 ? 0 : next.get(state)[cls];
+                if (target == 0) {
+                    delta[state * width + cls] = delta[fail[state] * width + cls];
+                } else {
+                    fail[target] = delta[fail[state] * width + cls];
+                    delta[state * width + cls] = target;
+                    queue.add(target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Localiza todas as ocorrências dos marcadores no texto, inclusive as sobrepostas.
+     *
+     * @param text Texto a ser examinado.
+     * @return Tabela das ocorrências, em ordem de posição.
+     */
+    public Boundaries scan(CharSequence text) {
+        int[][] positions = new int[markers.length][];
+        int[] counts = new int[markers.length];
+        int total = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            state = delta[state * width + classOf(text.charAt(i))];
+            for (int m : output[state]) {
+                int[] list = positions[m];
+                if (list == null) {
+                    list = positions[m] = new int[4];
+                } else if (counts[m] == list.length) {
+                    list = positions[m] = Arrays.copyOf(list, list.length * 2);
+                }
+                list[counts[m]++] = i - markers[m].length() + 1;
+                ++total;
+            }
+        }
+        return new Boundaries(positions, counts, total);
+    }
+
+    private int classOf(char c) {
+        return c < lowClass.length ? lowClass[c] : highClass.getOrDefault(c, 0);
+    }
+
+    /**
+     * Tabela das ocorrências dos marcadores em um texto.
+     */
+    public final class Boundaries {
+
+        private final int[][] positions;
+        private final int[] counts;
+        private final long[] ordered;
+
+        private Boundaries(int[][] positions, int[] counts, int total) {
+            this.positions = positions;
+            this.counts = counts;
+            ordered = new long[total];
+            int k = 0;
+            for (int m = 0; m < counts.length; ++m) {
+                for (int j = 0; j < counts[m]; ++j) {
+                    ordered[k++] = (long) positions[m][j] << 32 | m;
+                }
+            }
+            Arrays.sort(ordered);
+        }
+
+        /**
+         * Quantidade de ocorrências encontradas.
+         *
+         * @return Quantidade de ocorrências.
+         */
+        public int size() {
+            return ordered.length;
+        }
+
+        /**
+         * Posição da i-ésima ocorrência, em ordem crescente de posição.
+         *
+         * @param i Índice da ocorrência.
+         * @return Posição no texto.
+         */
+        public int position(int i) {
+            return (int) (ordered[i] >>> 32);
+        }
+
+        /**
+         * Marcador da i-ésima ocorrência, em ordem crescente de posição.
+         *
+         * @param i Índice da ocorrência.
+         * @return O marcador.
+         */
+        public String marker(int i) {
+            return markers[(int) ordered[i]];
+        }
+
+        /**
+         * Primeira ocorrência do marcador, como em String.indexOf(marker).
+         *
+         * @param marker Marcador procurado.
+         * @return Posição da primeira ocorrência, ou -1 (também para marcadores que não são do autômato).
+         */
+        public int first(String marker) {
+            return next(marker, 0);
+        }
+
+        /**
+         * Primeira ocorrência do marcador a partir de uma posição, como em String.indexOf(marker, from).
+         *
+         * @param marker Marcador procurado.
+         * @param from Posição inicial da busca.
+         * @return Posição da ocorrência, ou -1 (também para marcadores que não são do autômato).
+         */
+        public int next(String marker, int from) {
+            Integer m = index.get(marker);
+            int[] list = m == null ? null : positions[m];
+            if (list == null) {
+                return -1;
+            }
+            int at = Arrays.binarySearch(list, 0, counts[m], Math.max(0, from));
+            if (at < 0) {
+                at = -at - 1;
+            }
+            return at < counts[m] ? list[at] : -1;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package risadinha;
+
+import bloggerdata.Post;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Cache em disco das seções extraídas das publicações, para que uma nova conversão não analise de novo o HTML das
+ * publicações que não mudaram. Cada entrada é identificada pelo id da publicação e por um resumo (SHA-256) do
+ * conteúdo; uma entrada cujo resumo não confere é descartada e refeita.
+ *
+ * <p>
+ * O arquivo é binário, com um cabeçalho que identifica a configuração da análise: {@link ResumoHtmlContentParser#VERSION},
+ * a forma de análise e os marcadores das seções. Se a configuração mudou, todo o conteúdo do arquivo é
+ * ignorado, assim como um arquivo truncado ou corrompido. O arquivo é lido por inteiro na abertura e regravado por
+ * {@link #save(boolean)}, que pode descartar as publicações não consultadas na execução, como as removidas do
+ * blog.</p>
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public class ParseCache {
+
+    static Logger log = LogManager.getRootLogger();
+    private static final int MAGIC = 0x52495350;
+    private static final int FIELDS = 2 * Referencia.Field.values().length;
+
+    private final Path file;
+    private final SectionMarkers markers;
+    private final ResumoHtmlContentParser.Mode mode;
+    private final long configuration;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Long> used = ConcurrentHashMap.newKeySet();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Abre o cache guardado no arquivo, que não precisa existir. Se o arquivo não puder ser lido, o cache começa
+     * vazio.
+     *
+     * @param file Arquivo do cache.
+     * @param markers Vocabulário de marcadores das seções.
+     * @param mode Forma de análise do HTML.
+     */
+    public ParseCache(Path file, SectionMarkers markers, ResumoHtmlContentParser.Mode mode) {
+        this.file = file;
+        this.markers = markers;
+        this.mode = mode;
+        configuration = configuration(markers, mode);
+        load();
+    }
+
+    /**
+     * Obtém as seções de uma publicação, do cache ou, se ausentes ou desatualizadas, da análise do conteúdo.
+     *
+     * @param post A publicação.
+     * @return Seções da publicação.
+     */
+    public ResumoSections get(Post post) {
+        String content = post.getContent();
+        long hash = hash(content);
+        used.add(post.getId());
+        Entry entry = entries.get(post.getId());
+        if (entry != null && entry.hash == hash) {
+            hits.incrementAndGet();
+            return entry.sections;
+        }
+        misses.incrementAndGet();
+        ResumoSections sections = new ResumoHtmlContentParser(content, markers, mode).parse();
+        entries.put(post.getId(), new Entry(hash, sections));
+        return sections;
+    }
+
+    /**
+     * Grava o cache no arquivo, substituindo o anterior.
+     *
+     * @param prune Se verdadeiro, grava apenas as publicações consultadas nesta execução; deve ser usado após uma
+     * conversão completa do blog, para descartar as publicações removidas.
+     * @throws IOException Falha na gravação.
+     */
+    public void save(boolean prune) throws IOException {
+        if (prune) {
+            entries.keySet().retainAll(used);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(configuration);
+            out.writeInt(entries.size());
+            for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeLong(e.getValue().hash);
+                write(out, e.getValue().sections);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Resume os contadores de uso do cache.
+     *
+     * @return Texto com acertos, falhas e entradas guardadas.
+     */
+    public String getStatistics() {
+        return String.format("Cache de análise: %d acertos, %d falhas, %d publicações guardadas",
+                hits.get(), misses.get(), entries.size());
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != MAGIC || in.readLong() != configuration) {
+                log.info("Cache de análise " + file + " descartado: outra versão ou configuração");
+                return;
+            }
+            int count = readCount(in);
+            for (int i = 0; i < count; ++i) {
+                long id = in.readLong();
+                long hash = in.readLong();
+                entries.put(id, new Entry(hash, read(in)));
+            }
+        } catch (NoSuchFileException ex) {
+            // primeira execução: cache vazio
+        } catch (IOException ex) {
+            log.warn("Cache de análise " + file + " descartado: " + ex);
+            entries.clear();
+        }
+    }
+
+    /**
+     * Lê uma quantidade de itens ou de bytes, que não pode exceder o que resta do arquivo.
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available()) {
+            throw new IOException("tamanho inválido: " + count);
+        }
+        return count;
+    }
+
+    private static void write(DataOutputStream out, ResumoSections sections) throws IOException {
+        writeString(out, sections.getMensagemCurta());
+        writeString(out, sections.getMensagem());
+        writeString(out, sections.getUrlImagem());
+        out.writeInt(sections.getReferencias().size());
+        for (Referencia ref : sections.getReferencias()) {
+            writeString(out, ref.getText());
+            for (Referencia.Field field : Referencia.Field.values()) {
+                out.writeInt(ref.getStart(field));
+                out.writeInt(ref.getEnd(field));
+            }
+        }
+        writeStrings(out, sections.getAutor());
+        writeStrings(out, sections.getRevisor());
+    }
+
+    private static ResumoSections read(DataInputStream in) throws IOException {
+        String mensagemCurta = readString(in);
+        String mensagem = readString(in);
+        String urlImagem = readString(in);
+        int count = readCount(in);
+        List<Referencia> refs = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String text = readString(in);
+            int[] spans = new int[FIELDS];
+            for (int k = 0; k < FIELDS; ++k) {
+                spans[k] = in.readInt();
+            }
+            for (int k = 0; k < FIELDS; k += 2) {
+                if (spans[k] < 0 || spans[k] > spans[k + 1] || spans[k + 1] > text.length()) {
+                    throw new IOException("intervalo inválido: " + spans[k] + "-" + spans[k + 1]);
+                }
+            }
+            refs.add(new Referencia(text, spans));
+        }
+        return new ResumoSections(mensagemCurta, mensagem, urlImagem, Collections.unmodifiableList(refs),
+                readStrings(in), readStrings(in));
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readCount(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static Collection<String> readStrings(DataInputStream in) throws IOException {
+        int count = readCount(in);
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            strings.add(readString(in));
+        }
+        return Collections.unmodifiableCollection(strings);
+    }
+
+    /**
+     * Resumo da configuração da análise: versão do analisador, forma de análise e marcadores.
+     */
+    private static long configuration(SectionMarkers markers, ResumoHtmlContentParser.Mode mode) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ResumoHtmlContentParser.VERSION).append('\0').append(mode).append('\0')
+                .append(markers.getSeparator()).append('\0').append(markers.getMessageEnd()).append('\0')
+                .append(markers.getReference()).append('\0').append(markers.getReferenceEnd()).append('\0')
+                .append(markers.getAuthor()).append('\0').append(markers.getAuthorEnd()).append('\0')
+                .append(markers.getReviewer()).append('\0').append(markers.getReviewerEnd()).append('\0')
+                .append(markers.getField());
+        return hash(sb.toString());
+    }
+
+    /**
+     * Os primeiros 64 bits do SHA-256 do texto em UTF-8.
+     */
+    private static long hash(String text) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        byte[] d = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+        long h = 0;
+        for (int i = 0; i < 8; ++i) {
+            h = h << 8 | (d[i] & 0xff);
+        }
+        return h;
+    }
+
+    /**
+     * Seções de uma publicação e o resumo do conteúdo de que foram extraídas.
+     */
+    private static final class Entry {
+
+        private final long hash;
+        private final ResumoSections sections;
+
+        Entry(long hash, ResumoSections sections) {
+            this.hash = hash;
+            this.sections = sections;
+        }
+    }
+}
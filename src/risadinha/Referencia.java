@@ -23,121 +23,334 @@
  */
 package risadinha;
 
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Classe que representa os dados essenciais de uma referência.
  *
+ * <p>
+ * A referência segue o formato aproximado da ABNT: fonte, terminada pelo primeiro '.', título e, em qualquer ordem,
+ * "Disponível em", "Acesso em" e "Atualizado em" (ou "Informação atualizada em"). O texto é examinado em uma única
+ * passagem, e cada campo é guardado como um intervalo do texto da referência. As datas terminam no ano (quatro
+ * dígitos) e também são interpretadas como LocalDate.</p>
+ *
  * @author ricarte
  */
 public class Referencia {
-    private String source;
-    private String description;
-    private String url;
-    private String accessed;
-    private String updated;
 
+    /**
+     * Campos de uma referência.
+     */
+    public enum Field {
+        SOURCE, DESCRIPTION, URL, ACCESSED, UPDATED
+    }
+
+    private static final String DISP = "Disponível em";
+    private static final String ACCESS = "Acesso em";
+    private static final String UPDATE1 = "Atualizado em";
+    private static final String UPDATE2 = "Informação atualizada em";
+    private static final String[] MONTHS = {"jan", "fev", "mar", "abr", "mai", "jun",
+        "jul", "ago", "set", "out", "nov", "dez"};
+
+    private final String text;
+    private final int end;
+    private final int[] spans = new int[2 * Field.values().length];
+
+    /**
+     * Interpreta uma referência.
+     *
+     * @param ref Texto da referência.
+     */
     public Referencia(String ref) {
-        parse(ref);
-    }
-
-    private void parse(String ref) {
-        String disp = "Disponível em";
-        String access = "Acesso em";
-        String update1 = "Atualizado em";
-        String update2 = "Informação atualizada em";
-        String update;
-
-        int endSource = ref.indexOf('.');
-        source = ref.substring(0, endSource);
-        
-        int initDisp = ref.indexOf(disp);
-        int initAccess = ref.indexOf(access);
-        int initUpdate1 = ref.indexOf(update1);
-        int initUpdate2 = ref.indexOf(update2);
-        int initUpdate;
-
-        if (initUpdate1 == -1 && initUpdate2 == -1) {
-            initUpdate = -1;
-            update = "";
-        } else if (initUpdate2 == -1) {
-            initUpdate = initUpdate1;
-            update = update1;
-        } else {
-            initUpdate = initUpdate2;
-            update = update2;
+        text = ref;
+        end = ref.length();
+        parse();
+    }
+
+    /**
+     * Recria uma referência já interpretada, como guardada por {@link ParseCache}.
+     *
+     * @param text Texto da referência.
+     * @param spans Início e fim de cada campo no texto, na ordem de {@link Field}.
+     */
+    Referencia(String text, int[] spans) {
+        this.text = text;
+        end = text.length();
+        System.arraycopy(spans, 0, this.spans, 0, this.spans.length);
+    }
+
+    /**
+     * Interpreta todas as referências de um bloco, uma por linha, em uma única passagem. Linhas vazias são
+     * ignoradas e os espaços nas extremidades de cada linha são descartados. Os intervalos de cada referência são
+     * posições no texto da própria referência.
+     *
+     * @param block Bloco de referências.
+     * @return Lista não modificável de referências.
+     */
+    public static List<Referencia> parseAll(String block) {
+        List<Referencia> refs = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i <= block.length(); ++i) {
+            if (i == block.length() || block.charAt(i) == '\n') {
+                int s = lineStart;
+                int e = i;
+                while (s < e && block.charAt(s) <= ' ') {
+                    ++s;
+                }
+                while (e > s && block.charAt(e - 1) <= ' ') {
+                    --e;
+                }
+                if (s < e) {
+                    refs.add(new Referencia(block.substring(s, e)));
+                }
+                lineStart = i + 1;
+            }
         }
+        return Collections.unmodifiableList(refs);
+    }
 
-        int endTitle;
-        if (initDisp > 0 && initAccess > 0 && initUpdate > 0) {
-            endTitle = Math.min(initDisp, Math.min(initAccess, initUpdate)) - 1;
-        } else if (initDisp > 0 && initAccess > 0) {
-            endTitle = Math.min(initDisp, initAccess) - 1;
-        } else if (initDisp > 0 && initUpdate > 0) {
-            endTitle = Math.min(initDisp, initUpdate) - 1;
-        } else if (initAccess > 0 && initUpdate > 0) {
-            endTitle = Math.min(initAccess, initUpdate) - 1;
-        } else if (initDisp > 0) {
-            endTitle = initDisp - 1;
-        } else if (initAccess > 0) {
-            endTitle = initAccess - 1;
-        } else if (initUpdate > 0) {
-            endTitle = initUpdate - 1;
-        } else {
-            endTitle = ref.length()-1;
+    private void parse() {
+        int dot = -1;
+        int disp = -1;
+        int access = -1;
+        int update1 = -1;
+        int update2 = -1;
+        for (int i = 0; i < end; ++i) {
+            switch (text.charAt(i)) {
+                case '.':
+                    if (dot < 0) {
+                        dot = i;
+                    }
+                    break;
+                case 'D':
+                    if (disp < 0 && matches(DISP, i)) {
+                        disp = i;
+                    }
+                    break;
+                case 'A':
+                    if (access < 0 && matches(ACCESS, i)) {
+                        access = i;
+                    } else if (update1 < 0 && matches(UPDATE1, i)) {
+                        update1 = i;
+                    }
+                    break;
+                case 'I':
+                    if (update2 < 0 && matches(UPDATE2, i)) {
+                        update2 = i;
+                    }
+                    break;
+                default:
+            }
         }
 
-        if (endTitle > endSource) {
-            description = ref.substring(endSource+1, endTitle).trim();
+        int update = update2 >= 0 ? update2 : update1;
+        String updateMarker = update2 >= 0 ? UPDATE2 : UPDATE1;
+        // marcadores no início do texto não delimitam campos
+        disp = disp > 0 ? disp : -1;
+        access = access > 0 ? access : -1;
+        update = update > 0 ? update : -1;
+
+        int firstMarker = min(disp, min(access, update));
+        int endTitle = firstMarker >= 0 ? firstMarker - 1 : end - 1;
+        if (dot >= 0) {
+            set(Field.SOURCE, 0, dot);
+            trimmed(Field.DESCRIPTION, dot + 1, endTitle);
         } else {
-            description = "";
+            trimmed(Field.SOURCE, 0, firstMarker >= 0 ? firstMarker : end);
+            set(Field.DESCRIPTION, 0, 0);
         }
 
-        if (initDisp > 0) {
-            int endDisp;
-            if (initAccess > initDisp && initUpdate > initDisp)
-                endDisp = Math.min(initAccess, initUpdate);
-            else if (initAccess > initDisp) 
-                endDisp = initAccess;
-            else if (initUpdate > initDisp)
-                endDisp = initUpdate;
-            else
-                endDisp = ref.length()-1;
-            
-            url = ref.substring(initDisp + disp.length() + 1, endDisp).trim();
+        if (disp >= 0) {
+            int endDisp = min(access > disp ? access : -1, update > disp ? update : -1);
+            trimmed(Field.URL, disp + DISP.length() + 1, endDisp >= 0 ? endDisp : end - 1);
         } else {
-            url = "";
+            set(Field.URL, 0, 0);
         }
+        date(Field.ACCESSED, access, ACCESS, new int[]{disp, update});
+        date(Field.UPDATED, update, updateMarker, new int[]{disp, access});
+    }
 
-        if (initAccess > 0) {
-            accessed = ref.substring(initAccess + access.length() + 1, ref.indexOf("20", initAccess) + 4).trim();
-        } else {
-            accessed = "";
+    /**
+     * Data que segue o marcador, até o fim do primeiro ano (quatro dígitos) ou, sem ano, até o próximo marcador.
+     */
+    private void date(Field field, int marker, String name, int[] others) {
+        if (marker < 0) {
+            set(field, 0, 0);
+            return;
         }
+        int from = marker + name.length() + 1;
+        int to = -1;
+        int digits = 0;
+        for (int i = from; i < end && to < 0; ++i) {
+            digits = Character.isDigit(text.charAt(i)) ? digits + 1 : 0;
+            if (digits == 4) {
+                to = i + 1;
+            }
+        }
+        if (to < 0) {
+            to = end;
+            for (int other : others) {
+                if (other > from) {
+                    to = Math.min(to, other);
+                }
+            }
+        }
+        trimmed(field, from, to);
+    }
 
-        if (initUpdate > 0) {
-            updated = ref.substring(initUpdate + update.length() + 1, ref.indexOf("20", initUpdate) + 4).trim();
-        } else {
-            updated = "";
+    private boolean matches(String marker, int at) {
+        return at + marker.length() <= end && text.startsWith(marker, at);
+    }
+
+    private static int min(int a, int b) {
+        return a < 0 ? b : b < 0 ? a : Math.min(a, b);
+    }
+
+    private void set(Field field, int from, int to) {
+        spans[2 * field.ordinal()] = from;
+        spans[2 * field.ordinal() + 1] = Math.max(from, to);
+    }
+
+    private void trimmed(Field field, int from, int to) {
+        from = Math.min(from, end);
+        to = Math.min(to, end);
+        while (from < to && text.charAt(from) <= ' ') {
+            ++from;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            --to;
         }
+        set(field, from, to);
+    }
+
+    /**
+     * Início de um campo no texto da referência ({@link #getText()}).
+     *
+     * @param field O campo.
+     * @return Posição do primeiro caractere do campo.
+     */
+    public int getStart(Field field) {
+        return spans[2 * field.ordinal()];
+    }
+
+    /**
+     * Fim de um campo no texto da referência ({@link #getText()}).
+     *
+     * @param field O campo.
+     * @return Posição seguinte ao último caractere do campo; igual ao início se o campo está ausente.
+     */
+    public int getEnd(Field field) {
+        return spans[2 * field.ordinal() + 1];
+    }
+
+    /**
+     * Obter o valor de um campo.
+     *
+     * @param field O campo.
+     * @return Texto do campo, vazio se ausente.
+     */
+    public String get(Field field) {
+        return text.substring(getStart(field), getEnd(field));
+    }
+
+    /**
+     * Obter o texto completo da referência.
+     *
+     * @return Texto da referência.
+     */
+    public String getText() {
+        return text;
     }
 
     public String getSource() {
-        return source;
+        return get(Field.SOURCE);
     }
 
     public String getDescription() {
-        return description;
+        return get(Field.DESCRIPTION);
     }
 
     public String getUrl() {
-        return url;
+        return get(Field.URL);
     }
 
     public String getAccessed() {
-        return accessed;
+        return get(Field.ACCESSED);
     }
 
     public String getUpdated() {
-        return updated;
+        return get(Field.UPDATED);
+    }
+
+    /**
+     * Obter a data de acesso.
+     *
+     * @return Data de acesso, ou null se ausente ou não reconhecida.
+     */
+    public LocalDate getAccessedDate() {
+        return toDate(Field.ACCESSED);
     }
 
+    /**
+     * Obter a data de atualização.
+     *
+     * @return Data de atualização, ou null se ausente ou não reconhecida.
+     */
+    public LocalDate getUpdatedDate() {
+        return toDate(Field.UPDATED);
+    }
+
+    /**
+     * Interpreta datas como "6 jun. 2020", "30 de maio de 2020", "maio 2020" ou "30/05/2020".
+     */
+    private LocalDate toDate(Field field) {
+        int[] numbers = new int[3];
+        int count = 0;
+        int month = 0;
+        int i = getStart(field);
+        int to = getEnd(field);
+        while (i < to) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c)) {
+                int value = 0;
+                while (i < to && Character.isDigit(text.charAt(i))) {
+                    value = value * 10 + Character.digit(text.charAt(i++), 10);
+                }
+                if (count < numbers.length) {
+                    numbers[count++] = value;
+                }
+            } else if (Character.isLetter(c)) {
+                int word = i;
+                while (i < to && Character.isLetter(text.charAt(i))) {
+                    ++i;
+                }
+                if (month == 0 && i - word >= 3) {
+                    String prefix = text.substring(word, word + 3).toLowerCase().replace('ç', 'c');
+                    for (int m = 0; m < MONTHS.length; ++m) {
+                        if (MONTHS[m].equals(prefix)) {
+                            month = m + 1;
+                        }
+                    }
+                }
+            } else {
+                ++i;
+            }
+        }
+        try {
+            if (month > 0 && count == 2) {
+                return LocalDate.of(numbers[1], month, numbers[0]);
+            } else if (month > 0 && count == 1) {
+                return LocalDate.of(numbers[0], month, 1);
+            } else if (month == 0 && count == 3) {
+                return LocalDate.of(numbers[2], numbers[1], numbers[0]);
+            }
+        } catch (DateTimeException ex) {
+            // data inválida: tratada como não reconhecida
+        }
+        return null;
+    }
 }
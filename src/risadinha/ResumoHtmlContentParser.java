@@ -26,12 +26,14 @@ package risadinha;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.StringTokenizer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.safety.Cleaner;
 import org.jsoup.safety.Whitelist;
 
 /**
@@ -41,18 +43,66 @@ import org.jsoup.safety.Whitelist;
  */
 public class ResumoHtmlContentParser {
 
+    /**
+     * Forma de análise do HTML.
+     */
+    public enum Mode {
+        /**
+         * Constrói a árvore do documento com o Jsoup e a higieniza.
+         */
+        DOM,
+        /**
+         * Percorre o HTML com {@link HtmlEventTokenizer}, sem construir a árvore, guardando apenas o texto e a
+         * primeira imagem. O documento é percorrido até o fim, pois marcadores posteriores a uma seção podem mudar o
+         * seu término. O resultado é o mesmo de {@link #DOM}, exceto em marcações mal aninhadas que a construção da
+         * árvore reordenaria, como um parágrafo dentro de um link.
+         */
+        STREAMING
+    }
+
+    /**
+     * Versão da extração das seções e das referências; deve ser incrementada sempre que uma alteração mudar o
+     * resultado da extração, para invalidar o que foi guardado em {@link ParseCache}.
+     */
+    public static final int VERSION = 2;
+
     static Logger log = LogManager.getRootLogger();
-    private final Document soup;
-    private final String source;
+    private final String html;
+    private final SectionMarkers markers;
+    private final Mode mode;
+    private ResumoSections sections;
 
     /**
-     * Inicializar conteúdo para a extração de elementos.
+     * Inicializar conteúdo para a extração de elementos, com os marcadores do blog Dr Risadinha.
      *
      * @param html Fragmento de HTML a ser analisado.
      */
     public ResumoHtmlContentParser(String html) {
-        source = html;
-        soup = Jsoup.parseBodyFragment(html);
+        this(html, SectionMarkers.DEFAULT);
+    }
+
+    /**
+     * Inicializar conteúdo para a extração de elementos delimitados pelos marcadores indicados.
+     *
+     * @param html Fragmento de HTML a ser analisado.
+     * @param markers Vocabulário de marcadores das seções.
+     */
+    public ResumoHtmlContentParser(String html, SectionMarkers markers) {
+        this(html, markers, Mode.DOM);
+    }
+
+    /**
+     * Inicializar conteúdo para a extração de elementos delimitados pelos marcadores indicados, com a forma de
+     * análise indicada.
+     *
+     * @param html Fragmento de HTML a ser analisado.
+     * @param markers Vocabulário de marcadores das seções.
+     * @param mode Forma de análise do HTML.
+     */
+    public ResumoHtmlContentParser(String html, SectionMarkers markers, Mode mode) {
+        this.html = html;
+        this.markers = markers;
+        this.mode = mode;
     }
 
     /**
@@ -61,8 +111,7 @@ public class ResumoHtmlContentParser {
      * @return String com URL da imagem.
      */
     public String getUrlImagem() {
-        Element e = soup.getElementsByTag("img").first();
-        return e.attr("src");
+        return parse().getUrlImagem();
     }
 
     /**
@@ -71,14 +120,7 @@ public class ResumoHtmlContentParser {
      * @return Mensagem curta.
      */
     public String getMensagemCurta() {
-        String texts = Jsoup.clean(source, Whitelist.none());
-        int end = texts.indexOf("***");
-        if (end > 0) {
-            return texts.substring(0, end).replace("&nbsp;", "").
-                    replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
-        } else {
-            return "";
-        }
+        return parse().getMensagemCurta();
     }
 
     /**
@@ -87,26 +129,7 @@ public class ResumoHtmlContentParser {
      * @return Mensagem completa.
      */
     public String getMensagem() {
-        String texts = Jsoup.clean(source, Whitelist.none());
-        int start = texts.indexOf("***");
-        if (start > 0) {
-            start += 3;
-            int end = texts.indexOf("Referência");
-            if (end > 0) {
-                return texts.substring(start, end).replace("&nbsp;", "").
-                        replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
-            } else {
-                end = texts.indexOf("Para ter mai");
-                if (end > 0) {
-                    return texts.substring(start, end).replace("&nbsp;", "").
-                            replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
-                } else {
-                    return texts.substring(start).replace("&nbsp;", "").
-                            replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
-                }
-            }
-        }
-        return "";
+        return parse().getMensagem();
     }
 
     /**
@@ -115,7 +138,7 @@ public class ResumoHtmlContentParser {
      * @return Coleção de referências.
      */
     public Collection<String> getReferencia() {
-        return getMultipleNames(extrairReferencia(), "\n");
+        return parse().getReferencia();
     }
 
     /**
@@ -124,7 +147,7 @@ public class ResumoHtmlContentParser {
      * @return Coleção de autores.
      */
     public Collection<String> getAutor() {
-        return getMultipleNames(extrairAutor(), ",\n");
+        return parse().getAutor();
     }
 
     /**
@@ -133,85 +156,195 @@ public class ResumoHtmlContentParser {
      * @return Coleção de revisores.
      */
     public Collection<String> getRevisor() {
-        return getMultipleNames(extrairRevisor(), ",\n");
+        return parse().getRevisor();
     }
 
-    private Collection<String> getMultipleNames(String source, String sep) {
-        StringTokenizer linha = new StringTokenizer(source, sep);
-        Collection<String> result = new ArrayList<>();
-        String token;
-        while (linha.hasMoreTokens()) {
-            token = linha.nextToken().trim();
-            if (!token.isEmpty()) {
-                result.add(token);
-            }
+    /**
+     * Extrair todas as seções da publicação. O documento é higienizado uma única vez, mantendo apenas as quebras
+     * de linha, e todos os marcadores são localizados em uma única passagem por {@link MarkerScanner}. Uma seção
+     * cujo marcador final aparece antes do seu início termina na ocorrência seguinte do marcador. A extração é
+     * feita na primeira chamada; as seguintes devolvem o mesmo resultado. Sem imagem, a URL da imagem é vazia.
+     *
+     * @return Seções da publicação.
+     */
+    public ResumoSections parse() {
+        if (sections == null) {
+            sections = extract();
         }
-        return Collections.unmodifiableCollection(result);
+        return sections;
     }
 
-    private String extrairReferencia() {
-        String texts = Jsoup.clean(source, Whitelist.none().addTags("br"));
-        int posRef = texts.indexOf("Referênc");
+    private ResumoSections extract() {
+        if (mode == Mode.STREAMING) {
+            TextCollector collector = new TextCollector();
+            new HtmlEventTokenizer(html).run(collector);
+            return extract(collector.urlImagem == null ? "" : collector.urlImagem,
+                    collector.texts.toString().trim(), collector.plain.toString().trim());
+        }
+        Document soup = Jsoup.parseBodyFragment(html);
+        Element img = soup.getElementsByTag("img").first();
+        String urlImagem = img == null ? "" : img.attr("src");
+        Element body = new Cleaner(Whitelist.none().addTags("br")).clean(soup).body();
+        String texts = body.html();
+        // sem as quebras de linha, o documento higienizado é serializado como por Jsoup.clean com Whitelist.none()
+        body.getElementsByTag("br").remove();
+        String plain = body.html();
+        return extract(urlImagem, texts, plain);
+    }
+
+    /**
+     * Extrai as seções do texto higienizado, com as quebras de linha (texts) e sem elas (plain).
+     */
+    private ResumoSections extract(String urlImagem, String texts, String plain) {
+        MarkerScanner scanner = markers.getScanner();
+        MarkerScanner.Boundaries plainMarks = scanner.scan(plain);
+        MarkerScanner.Boundaries marks = scanner.scan(texts);
+
+        String mensagemCurta = "";
+        String mensagem = "";
+        int separator = plainMarks.first(markers.getSeparator());
+        if (separator > 0) {
+            mensagemCurta = HtmlEntityDecoder.decode(plain, 0, separator);
+            int start = separator + markers.getSeparator().length();
+            int end = sectionEnd(plainMarks, markers.getMessageEnd(), start);
+            mensagem = HtmlEntityDecoder.decode(plain, start, end > 0 ? end : plain.length());
+        }
+
+        String referencia = "";
+        int posRef = marks.first(markers.getReference());
         if (posRef > 0) {
-            int start = texts.indexOf(":", posRef) + 1;
+            int start = marks.next(markers.getField(), posRef) + 1;
             if (start > 0) {
-                int end = texts.indexOf("Autor");
+                int end = sectionEnd(marks, markers.getReferenceEnd(), start);
                 if (end > 0) {
-                    return texts.substring(start, end).replace("&nbsp;", "").replace("<br>", "\n").
-                            replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
+                    referencia = HtmlEntityDecoder.decode(texts, start, end);
                 }
             }
         }
-        return "";
-    }
 
-    private String extrairAutor() {
-        String texts = Jsoup.clean(source, Whitelist.none().addTags("br"));
-        int posAut = texts.indexOf("Autor");
+        String autor = "";
+        int posAut = marks.first(markers.getAuthor());
         if (posAut > 0) {
-            int start = texts.indexOf(":", posAut) + 1;
+            int start = marks.next(markers.getField(), posAut) + 1;
             if (start > 0) {
-                int end = texts.indexOf("Revisor");
-                if (end > 0) {
-                    return texts.substring(start, end).replace("&nbsp;", "").replace("<br>", "\n").
-                            replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
-                } else {
-                    end = texts.indexOf("Você achou");
-                    if (end > 0) {
-                        return texts.substring(start, end).replace("&nbsp;", "").replace("<br>", "\n").
-                                replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
-                    } else {
-                        return texts.substring(start).replace("&nbsp;", "").replace("<br>", "\n").
-                                replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
+                int end = sectionEnd(marks, markers.getAuthorEnd(), start);
+                autor = HtmlEntityDecoder.decode(texts, start, end > 0 ? end : texts.length());
+            }
+        }
+
+        String revisor = "";
+        int posRev = marks.first(markers.getReviewer());
+        if (posRev > 0) {
+            int start = marks.next(markers.getField(), posRev) + 1;
+            if (start > 0) {
+                int end = -1;
+                for (String marker : markers.getReviewerEnd()) {
+                    end = marks.next(marker, start);
+                    if (end != -1) {
+                        break;
                     }
                 }
+                revisor = HtmlEntityDecoder.decode(texts, start, end > 0 ? end : texts.length());
             }
         }
-        return "";
+
+        return new ResumoSections(mensagemCurta, mensagem, urlImagem, Referencia.parseAll(referencia),
+                getMultipleNames(autor, ",\n"), getMultipleNames(revisor, ",\n"));
     }
 
-    private String extrairRevisor() {
-        String texts = Jsoup.clean(source, Whitelist.none().addTags("br"));
-        int posRev = texts.indexOf("Revisor");
-        if (posRev > 0) {
-            int start = texts.indexOf(":", posRev) + 1;
-            if (start > 0) {
-                int end = texts.indexOf("Observação", start);
-                if (end == -1) {
-                    end = texts.indexOf("Você", start);
-                    if (end == -1) {
-                        end = texts.indexOf("Clique", start);
+    /**
+     * Fim de uma seção que começa em start, dado pelo primeiro dos marcadores finais encontrado: a primeira
+     * ocorrência do marcador no texto ou, se esta fica antes do início, a primeira ocorrência a partir dele.
+     */
+    private static int sectionEnd(MarkerScanner.Boundaries marks, List<String> endMarkers, int start) {
+        int end = -1;
+        for (String marker : endMarkers) {
+            int first = marks.first(marker);
+            end = first > 0 && first < start ? marks.next(marker, start) : first;
+            if (end > 0) {
+                break;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Acumula os eventos de {@link HtmlEventTokenizer} no mesmo texto que o Jsoup produz ao serializar o documento
+     * higienizado: espaços em branco de cada trecho reduzidos a um só, '&amp;', '&lt;', '&gt;' e o espaço não
+     * separável escritos como entidades e cada quebra de linha precedida de '\n'.
+     */
+    private static class TextCollector implements HtmlEventTokenizer.Handler {
+
+        private final StringBuilder texts = new StringBuilder();
+        private final StringBuilder plain = new StringBuilder();
+        private String urlImagem;
+
+        @Override
+        public boolean text(String text) {
+            int from = texts.length();
+            boolean lastWasWhite = false;
+            for (int i = 0; i < text.length(); ++i) {
+                char c = text.charAt(i);
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r') {
+                    if (!lastWasWhite) {
+                        texts.append(' ');
+                        lastWasWhite = true;
                     }
+                    continue;
                 }
-                if (end > 0) {
-                    return texts.substring(start, end).replace("&nbsp;", "").replace("<br>", "\n").
-                            replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
-                } else {
-                    return texts.substring(start).replace("&nbsp;", "").replace("<br>", "\n").
-                            replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
+                lastWasWhite = false;
+                switch (c) {
+                    case '&':
+                        texts.append("&amp;");
+                        break;
+                    case '<':
+                        texts.append("&lt;");
+                        break;
+                    case '>':
+                        texts.append("&gt;");
+                        break;
+                    case '\u00a0':
+                        texts.append("&nbsp;");
+                        break;
+                    default:
+                        texts.append(c);
                 }
             }
+            plain.append(texts, from, texts.length());
+            return true;
+        }
+
+        @Override
+        public boolean startTag(String name, HtmlEventTokenizer tokenizer) {
+            if (name.equals("img") && urlImagem == null) {
+                String src = tokenizer.attribute("src");
+                urlImagem = src == null ? "" : src;
+            } else if (name.equals("br")) {
+                texts.append("\n<br>");
+            }
+            return true;
         }
-        return "";
+
+        @Override
+        public boolean endTag(String name) {
+            // como no Jsoup, </br> equivale a <br>
+            if (name.equals("br")) {
+                texts.append("\n<br>");
+            }
+            return true;
+        }
+    }
+
+    private Collection<String> getMultipleNames(String source, String sep) {
+        StringTokenizer linha = new StringTokenizer(source, sep);
+        Collection<String> result = new ArrayList<>();
+        String token;
+        while (linha.hasMoreTokens()) {
+            token = linha.nextToken().trim();
+            if (!token.isEmpty()) {
+                result.add(token);
+            }
+        }
+        return Collections.unmodifiableCollection(result);
     }
 }
@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package risadinha;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Seções extraídas de uma só vez do conteúdo de uma publicação do Dr Risadinha por
+ * {@link ResumoHtmlContentParser#parse()}.
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public class ResumoSections {
+
+    private final String mensagemCurta;
+    private final String mensagem;
+    private final String urlImagem;
+    private final List<Referencia> referencias;
+    private final Collection<String> referencia;
+    private final Collection<String> autor;
+    private final Collection<String> revisor;
+
+    ResumoSections(String mensagemCurta, String mensagem, String urlImagem, List<Referencia> referencias,
+            Collection<String> autor, Collection<String> revisor) {
+        this.mensagemCurta = mensagemCurta;
+        this.mensagem = mensagem;
+        this.urlImagem = urlImagem;
+        this.referencias = referencias;
+        List<String> texts = new ArrayList<>(referencias.size());
+        for (Referencia ref : referencias) {
+            texts.add(ref.getText());
+        }
+        this.referencia = Collections.unmodifiableList(texts);
+        this.autor = autor;
+        this.revisor = revisor;
+    }
+
+    /**
+     * Obter a mensagem curta, texto anterior a '***'.
+     *
+     * @return Mensagem curta.
+     */
+    public String getMensagemCurta() {
+        return mensagemCurta;
+    }
+
+    /**
+     * Obter a mensagem completa, texto entre '***' e as referências.
+     *
+     * @return Mensagem completa.
+     */
+    public String getMensagem() {
+        return mensagem;
+    }
+
+    /**
+     * Obter URL da imagem representativa da publicação.
+     *
+     * @return String com URL da imagem.
+     */
+    public String getUrlImagem() {
+        return urlImagem;
+    }
+
+    /**
+     * Obter as referências.
+     *
+     * @return Coleção não modificável de referências.
+     */
+    public Collection<String> getReferencia() {
+        return referencia;
+    }
+
+    /**
+     * Obter as referências já interpretadas.
+     *
+     * @return Lista não modificável de referências.
+     */
+    public List<Referencia> getReferencias() {
+        return referencias;
+    }
+
+    /**
+     * Obter os autores.
+     *
+     * @return Coleção não modificável de autores.
+     */
+    public Collection<String> getAutor() {
+        return autor;
+    }
+
+    /**
+     * Obter os revisores.
+     *
+     * @return Coleção não modificável de revisores.
+     */
+    public Collection<String> getRevisor() {
+        return revisor;
+    }
+}
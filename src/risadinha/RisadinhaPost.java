@@ -25,9 +25,8 @@ package risadinha;
 
 import bloggerdata.Post;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -35,18 +34,24 @@ import org.apache.logging.log4j.Logger;
  * Representa informação específica de publicações do Dr Risadinha do 
  * conteúdo da publicação do blog.
  *
+ * <p>
+ * Os campos extraídos do conteúdo (mensagens, imagem, referências, autores e revisores) só são obtidos no primeiro
+ * acesso a qualquer um deles, ou por {@link #parse()}, e então guardados; título, identificador, datas, rótulos e
+ * URL vêm diretamente da publicação original.</p>
+ *
  * @author ricarte at ft.unicamp.br
  */
 public class RisadinhaPost {
 
     static Logger log = LogManager.getRootLogger();
     private final Post post;
+    private final SectionMarkers markers;
+    private final ResumoHtmlContentParser.Mode mode;
+    private final ParseCache cache;
+    private final boolean releaseContent;
+    private ResumoSections sections;
     private String mensagemCurta;
     private String mensagem;
-    private String imageUrl;
-    private Collection<String> referencia;
-    private Collection<String> autor;
-    private Collection<String> revisor;
 
     /**
      * Cria objeto com complemento específico do Dr Risadinha a partir
@@ -54,21 +59,87 @@ public class RisadinhaPost {
      * @param post Publicação original.
      */
     public RisadinhaPost(Post post) {
+        this(post, SectionMarkers.DEFAULT);
+    }
+
+    /**
+     * Cria objeto com complemento específico do Dr Risadinha a partir
+     * da publicação original, com seções delimitadas pelos marcadores indicados.
+     * @param post Publicação original.
+     * @param markers Vocabulário de marcadores das seções.
+     */
+    public RisadinhaPost(Post post, SectionMarkers markers) {
+        this(post, markers, false);
+    }
+
+    /**
+     * Cria objeto com complemento específico do Dr Risadinha a partir
+     * da publicação original, com seções delimitadas pelos marcadores indicados.
+     * @param post Publicação original.
+     * @param markers Vocabulário de marcadores das seções.
+     * @param releaseContent Se verdadeiro, o conteúdo HTML da publicação original é descartado
+     * ({@link Post#releaseContent()}) assim que os campos são extraídos.
+     */
+    public RisadinhaPost(Post post, SectionMarkers markers, boolean releaseContent) {
+        this(post, markers, ResumoHtmlContentParser.Mode.DOM, releaseContent);
+    }
+
+    /**
+     * Cria objeto com complemento específico do Dr Risadinha a partir
+     * da publicação original, analisando o HTML na forma indicada.
+     * @param post Publicação original.
+     * @param markers Vocabulário de marcadores das seções.
+     * @param mode Forma de análise do HTML.
+     * @param releaseContent Se verdadeiro, o conteúdo HTML da publicação original é descartado
+     * ({@link Post#releaseContent()}) assim que os campos são extraídos.
+     */
+    public RisadinhaPost(Post post, SectionMarkers markers, ResumoHtmlContentParser.Mode mode,
+            boolean releaseContent) {
         this.post = post;
-        referencia = new ArrayList<>();
-        autor = new ArrayList<>();
-        revisor = new ArrayList<>();
-        setPostContentData();
+        this.markers = markers;
+        this.mode = mode;
+        this.cache = null;
+        this.releaseContent = releaseContent;
     }
 
-    private void setPostContentData() {
-        ResumoHtmlContentParser parser = new ResumoHtmlContentParser(post.getContent());
-        mensagemCurta = parser.getMensagemCurta().trim();
-        mensagem = parser.getMensagem().trim();
-        imageUrl = parser.getUrlImagem();
-        referencia = parser.getReferencia();
-        autor = parser.getAutor();
-        revisor = parser.getRevisor();
+    /**
+     * Cria objeto com complemento específico do Dr Risadinha a partir
+     * da publicação original, obtendo os campos extraídos do cache de análise.
+     * @param post Publicação original.
+     * @param cache Cache de análise, que define também os marcadores e a forma de análise.
+     * @param releaseContent Se verdadeiro, o conteúdo HTML da publicação original é descartado
+     * ({@link Post#releaseContent()}) assim que os campos são extraídos.
+     */
+    public RisadinhaPost(Post post, ParseCache cache, boolean releaseContent) {
+        this.post = post;
+        this.markers = null;
+        this.mode = null;
+        this.cache = cache;
+        this.releaseContent = releaseContent;
+    }
+
+    /**
+     * Extrai agora todos os campos do conteúdo, em vez de esperar pelo primeiro acesso. Útil para que a análise
+     * do HTML seja feita, e suas falhas sinalizadas, em um ponto conhecido.
+     * @return Este objeto.
+     */
+    public RisadinhaPost parse() {
+        sections();
+        return this;
+    }
+
+    private synchronized ResumoSections sections() {
+        if (sections == null) {
+            ResumoSections parsed = cache != null ? cache.get(post)
+                    : new ResumoHtmlContentParser(post.getContent(), markers, mode).parse();
+            mensagemCurta = parsed.getMensagemCurta().trim();
+            mensagem = parsed.getMensagem().trim();
+            sections = parsed;
+            if (releaseContent) {
+                post.releaseContent();
+            }
+        }
+        return sections;
     }
 
     /**
@@ -124,6 +195,7 @@ public class RisadinhaPost {
      * @return Mensagem curta.
      */
     public String getMensagemCurta() {
+        sections();
         return mensagemCurta;
     }
 
@@ -132,6 +204,7 @@ public class RisadinhaPost {
      * @return Mensagem completa.
      */    
     public String getMensagem() {
+        sections();
         return mensagem;
     }
 
@@ -140,7 +213,7 @@ public class RisadinhaPost {
      * @return URL da imagem.
      */
     public String getImageUrl() {
-        return imageUrl;
+        return sections().getUrlImagem();
     }
 
     /**
@@ -148,7 +221,15 @@ public class RisadinhaPost {
      * @return Coleção de referências.
      */
     public Collection<String> getReferencia() {
-        return Collections.unmodifiableCollection(referencia);
+        return sections().getReferencia();
+    }
+
+    /**
+     * Obter referências interpretadas.
+     * @return Lista não modificável de referências.
+     */
+    public List<Referencia> getReferencias() {
+        return sections().getReferencias();
     }
 
     /** 
@@ -156,7 +237,7 @@ public class RisadinhaPost {
      * @return Coleção de autores.
      */
     public Collection<String> getAutor() {
-        return Collections.unmodifiableCollection(autor);
+        return sections().getAutor();
     }
 
     /**
@@ -164,7 +245,7 @@ public class RisadinhaPost {
      * @return Coleção de revisores.
      */
     public Collection<String> getRevisores() {
-        return Collections.unmodifiableCollection(revisor);
+        return sections().getRevisor();
     }
 
 }
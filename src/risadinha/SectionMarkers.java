@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Prof. Ivan L. M. Ricarte, FT-UNICAMP.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package risadinha;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Vocabulário dos marcadores que delimitam as seções do conteúdo de uma publicação: mensagem curta, mensagem,
+ * referências, autores e revisores. Cada seção termina no primeiro marcador final encontrado, na ordem em que os
+ * marcadores finais são listados.
+ *
+ * <p>
+ * O vocabulário pode ser lido de um arquivo de propriedades, com listas separadas por '|': 'markerseparator' (fim da
+ * mensagem curta), 'markermessageend', 'markerreference', 'markerreferenceend', 'markerauthor',
+ * 'markerauthorend', 'markerreviewer', 'markerreviewerend' e 'markerfield' (separador entre o nome da seção e seu
+ * conteúdo). Propriedades ausentes mantêm os marcadores do blog Dr Risadinha.</p>
+ *
+ * @author ricarte at ft.unicamp.br
+ */
+public class SectionMarkers {
+
+    /**
+     * Marcadores do modelo de publicação do blog Dr Risadinha.
+     */
+    public static final SectionMarkers DEFAULT = new SectionMarkers("***",
+            Arrays.asList("Referência", "Para ter mai"),
+            "Referênc", Collections.singletonList("Autor"),
+            "Autor", Arrays.asList("Revisor", "Você achou"),
+            "Revisor", Arrays.asList("Observação", "Você", "Clique"),
+            ":");
+
+    private final String separator;
+    private final List<String> messageEnd;
+    private final String reference;
+    private final List<String> referenceEnd;
+    private final String author;
+    private final List<String> authorEnd;
+    private final String reviewer;
+    private final List<String> reviewerEnd;
+    private final String field;
+    private final MarkerScanner scanner;
+
+    /**
+     * Define o vocabulário de marcadores.
+     *
+     * @param separator Fim da mensagem curta e início da mensagem.
+     * @param messageEnd Marcadores finais da mensagem.
+     * @param reference Início da seção de referências.
+     * @param referenceEnd Marcadores finais das referências.
+     * @param author Início da seção de autores.
+     * @param authorEnd Marcadores finais dos autores.
+     * @param reviewer Início da seção de revisores.
+     * @param reviewerEnd Marcadores finais dos revisores.
+     * @param field Separador entre o nome da seção e seu conteúdo.
+     */
+    public SectionMarkers(String separator, List<String> messageEnd, String reference, List<String> referenceEnd,
+            String author, List<String> authorEnd, String reviewer, List<String> reviewerEnd, String field) {
+        this.separator = separator;
+        this.messageEnd = Collections.unmodifiableList(new ArrayList<>(messageEnd));
+        this.reference = reference;
+        this.referenceEnd = Collections.unmodifiableList(new ArrayList<>(referenceEnd));
+        this.author = author;
+        this.authorEnd = Collections.unmodifiableList(new ArrayList<>(authorEnd));
+        this.reviewer = reviewer;
+        this.reviewerEnd = Collections.unmodifiableList(new ArrayList<>(reviewerEnd));
+        this.field = field;
+        List<String> all = new ArrayList<>(Arrays.asList(separator, reference, author, reviewer, field));
+        all.addAll(messageEnd);
+        all.addAll(referenceEnd);
+        all.addAll(authorEnd);
+        all.addAll(reviewerEnd);
+        scanner = new MarkerScanner(all);
+    }
+
+    /**
+     * Lê o vocabulário das propriedades 'marker...'; as ausentes mantêm os valores de {@link #DEFAULT}.
+     *
+     * @param prop Propriedades do projeto.
+     * @return O vocabulário.
+     */
+    public static SectionMarkers fromProperties(Properties prop) {
+        return new SectionMarkers(
+                prop.getProperty("markerseparator", DEFAULT.separator),
+                list(prop, "markermessageend", DEFAULT.messageEnd),
+                prop.getProperty("markerreference", DEFAULT.reference),
+                list(prop, "markerreferenceend", DEFAULT.referenceEnd),
+                prop.getProperty("markerauthor", DEFAULT.author),
+                list(prop, "markerauthorend", DEFAULT.authorEnd),
+                prop.getProperty("markerreviewer", DEFAULT.reviewer),
+                list(prop, "markerreviewerend", DEFAULT.reviewerEnd),
+                prop.getProperty("markerfield", DEFAULT.field));
+    }
+
+    private static List<String> list(Properties prop, String key, List<String> defaults) {
+        String value = prop.getProperty(key);
+        return value == null ? defaults : Arrays.asList(value.split("\\|"));
+    }
+
+    /**
+     * Autômato que localiza todos os marcadores do vocabulário.
+     *
+     * @return O autômato compilado.
+     */
+    public MarkerScanner getScanner() {
+        return scanner;
+    }
+
+    /**
+     * Fim da mensagem curta e início da mensagem.
+     *
+     * @return O marcador.
+     */
+    public String getSeparator() {
+        return separator;
+    }
+
+    /**
+     * Marcadores finais da mensagem.
+     *
+     * @return Lista não modificável de marcadores.
+     */
+    public List<String> getMessageEnd() {
+        return messageEnd;
+    }
+
+    /**
+     * Início da seção de referências.
+     *
+     * @return O marcador.
+     */
+    public String getReference() {
+        return reference;
+    }
+
+    /**
+     * Marcadores finais das referências.
+     *
+     * @return Lista não modificável de marcadores.
+     */
+    public List<String> getReferenceEnd() {
+        return referenceEnd;
+    }
+
+    /**
+     * Início da seção de autores.
+     *
+     * @return O marcador.
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Marcadores finais dos autores.
+     *
+     * @return Lista não modificável de marcadores.
+     */
+    public List<String> getAuthorEnd() {
+        return authorEnd;
+    }
+
+    /**
+     * Início da seção de revisores.
+     *
+     * @return O marcador.
+     */
+    public String getReviewer() {
+        return reviewer;
+    }
+
+    /**
+     * Marcadores finais dos revisores.
+     *
+     * @return Lista não modificável de marcadores.
+     */
+    public List<String> getReviewerEnd() {
+        return reviewerEnd;
+    }
+
+    /**
+     * Separador entre o nome da seção e seu conteúdo.
+     *
+     * @return O marcador.
+     */
+    public String getField() {
+        return field;
+    }
+}